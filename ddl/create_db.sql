@@ -16,7 +16,8 @@ CREATE table user_table
 ,user_json_object varchar(8000)
 ,user_last_seen TIMESTAMP DEFAULT NOW
 ,user_softlock_sessionid bigint 
-,user_softlock_expiry TIMESTAMP);
+,user_softlock_expiry TIMESTAMP
+,user_version bigint DEFAULT 0 NOT NULL);
 
 PARTITION TABLE user_table ON COLUMN userid;
 
@@ -24,6 +25,8 @@ create index ut_del on user_table(user_last_seen);
 
 create index ut_loyaltycard on user_table (field(user_json_object, 'loyaltySchemeNumber'));
 
+create index ut_locked on user_table (userid) WHERE user_softlock_sessionid IS NOT NULL;
+
 create table user_usage_table
 (userid bigint not null
 ,allocated_amount bigint not null
@@ -177,14 +180,30 @@ CREATE PROCEDURE
    PARTITION ON TABLE user_table COLUMN userid
    FROM CLASS chargingdemoprocs.GetAndLockUser;
    
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid
+   FROM CLASS chargingdemoprocs.GetAndLockUserIfChanged;
+   
 CREATE PROCEDURE 
    PARTITION ON TABLE user_table COLUMN userid
    FROM CLASS chargingdemoprocs.UpdateLockedUser;
    
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid
+   FROM CLASS chargingdemoprocs.UpdateVersionedUser;
+   
 CREATE PROCEDURE 
    PARTITION ON TABLE user_table COLUMN userid
    FROM CLASS chargingdemoprocs.UpsertUser;
    
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid
+   FROM CLASS chargingdemoprocs.UpsertUserBatch;
+   
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid PARAMETER 0
+   FROM CLASS chargingdemoprocs.DeleteUserRange;
+   
 CREATE PROCEDURE 
    PARTITION ON TABLE user_table COLUMN userid
    FROM CLASS chargingdemoprocs.DelUser;
@@ -193,9 +212,37 @@ CREATE PROCEDURE
    PARTITION ON TABLE user_table COLUMN userid
    FROM CLASS chargingdemoprocs.ReportQuotaUsage;  
    
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid
+   FROM CLASS chargingdemoprocs.ReportQuotaUsageWithOptions;  
+   
 CREATE PROCEDURE 
    PARTITION ON TABLE user_table COLUMN userid
    FROM CLASS chargingdemoprocs.AddCredit;  
+   
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid
+   FROM CLASS chargingdemoprocs.AddCreditWithOptions;  
+   
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid
+   FROM CLASS chargingdemoprocs.AddCreditBatch;  
+   
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_recent_transactions COLUMN userid PARAMETER 0
+   FROM CLASS chargingdemoprocs.PurgeOldTransactions;  
+
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_usage_table COLUMN userid PARAMETER 0
+   FROM CLASS chargingdemoprocs.ClearUnfinishedTransactions;  
+
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid PARAMETER 0
+   FROM CLASS chargingdemoprocs.UnlockUsers;  
+
+CREATE PROCEDURE 
+   PARTITION ON TABLE user_table COLUMN userid PARAMETER 0
+   FROM CLASS chargingdemoprocs.GetBalancePage;  
 
 
 END_OF_BATCH
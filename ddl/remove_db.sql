@@ -20,15 +20,37 @@ DROP PROCEDURE GetUser IF EXISTS;
    
 DROP PROCEDURE GetAndLockUser IF EXISTS;
    
+DROP PROCEDURE GetAndLockUserIfChanged IF EXISTS;
+   
 DROP PROCEDURE UpdateLockedUser IF EXISTS;
    
+DROP PROCEDURE UpdateVersionedUser IF EXISTS;
+   
 DROP PROCEDURE UpsertUser IF EXISTS;
    
+DROP PROCEDURE UpsertUserBatch IF EXISTS;
+   
+DROP PROCEDURE DeleteUserRange IF EXISTS;
+   
 DROP PROCEDURE DelUser IF EXISTS;
    
 DROP PROCEDURE ReportQuotaUsage IF EXISTS;  
    
+DROP PROCEDURE ReportQuotaUsageWithOptions IF EXISTS;  
+   
 DROP PROCEDURE AddCredit IF EXISTS;  
+   
+DROP PROCEDURE AddCreditWithOptions IF EXISTS;  
+   
+DROP PROCEDURE AddCreditBatch IF EXISTS;  
+   
+DROP PROCEDURE PurgeOldTransactions IF EXISTS;  
+   
+DROP PROCEDURE ClearUnfinishedTransactions IF EXISTS;  
+   
+DROP PROCEDURE UnlockUsers IF EXISTS;  
+   
+DROP PROCEDURE GetBalancePage IF EXISTS;  
 
 DROP view current_locks IF EXISTS; 
 
@@ -13,11 +13,13 @@
 USERCOUNT=$1
 TPMS=$2
 MAX_CREDIT=$3
+THREADS=$4
+BATCHSIZE=$5
 
 if 
         [ "$USERCOUNT" = "" -o "$TPMS" = "" -o "$MAX_CREDIT" = "" ]
 then
-        echo Usage: $0 usercount tpms max_credit
+        echo Usage: $0 usercount tpms max_credit [threads batchsize]
 
         exit 1
 fi
@@ -27,7 +29,7 @@ mkdir logs 2> /dev/null
 
 cd voltdb-charglt/jars
 
-echo `date` java ${JVMOPTS} -jar CreateChargingDemoData.jar `cat $HOME/.vdbhostnames`  $USERCOUNT $TPMS $MAX_CREDIT >> $HOME/logs/activity.log
-java ${JVMOPTS} -jar CreateChargingDemoData.jar `cat $HOME/.vdbhostnames`  $USERCOUNT $TPMS $MAX_CREDIT
+echo `date` java ${JVMOPTS} -jar CreateChargingDemoData.jar `cat $HOME/.vdbhostnames`  $USERCOUNT $TPMS $MAX_CREDIT $THREADS $BATCHSIZE >> $HOME/logs/activity.log
+java ${JVMOPTS} -jar CreateChargingDemoData.jar `cat $HOME/.vdbhostnames`  $USERCOUNT $TPMS $MAX_CREDIT $THREADS $BATCHSIZE
 
 
@@ -0,0 +1,61 @@
+#!/bin/sh
+
+#
+#  Copyright (C) 2025 Volt Active Data Inc.
+# 
+#  Use of this source code is governed by an MIT
+#  license that can be found in the LICENSE file or at
+#  https://opensource.org/licenses/MIT.
+# 
+
+#
+# Build the OSGi bundle that holds AddCreditBinaryFormatter, and copy it to
+# VoltDB's bundles directory so the ADDCREDIT_BINARY topic can use it. The
+# formatter is compiled against the jars that come with VoltDB, which include
+# the OSGi framework.
+#
+
+. $HOME/.profile
+
+if
+	[ "$VOLTDB_HOME" = "" ]
+then
+	VOLTDB_HOME=`dirname \`which voltdb\``/..
+fi
+
+BUNDLE=voltdb-chargingdemo-formatter.jar
+BUILDDIR=/tmp/chargingdemoformatter_$$
+
+cd $HOME/voltdb-charglt
+
+rm -rf $BUILDDIR
+mkdir -p $BUILDDIR/classes
+
+javac -source 1.8 -target 1.8 -d $BUILDDIR/classes -cp "$VOLTDB_HOME/voltdb/*:$VOLTDB_HOME/lib/*" serverSrc/chargingdemoformatter/*.java
+
+if
+	[ "$?" != "0" ]
+then
+	echo Unable to compile formatter
+	rm -rf $BUILDDIR
+	exit 1
+fi
+
+cat > $BUILDDIR/MANIFEST.MF <<END_OF_MANIFEST
+Bundle-Activator: chargingdemoformatter.AddCreditBinaryFormatterFactory
+Bundle-ManifestVersion: 2
+Bundle-Name: Charging Demo AddCredit Binary Formatter
+Bundle-SymbolicName: chargingdemoformatter
+Bundle-Version: 1.0.0
+DynamicImport-Package: *
+END_OF_MANIFEST
+
+jar cfm jars/$BUNDLE $BUILDDIR/MANIFEST.MF -C $BUILDDIR/classes chargingdemoformatter
+rm -rf $BUILDDIR
+
+mkdir $VOLTDB_HOME/bundles 2> /dev/null
+cp jars/$BUNDLE $VOLTDB_HOME/bundles
+
+echo Copied $BUNDLE to $VOLTDB_HOME/bundles
+
+exit 0
@@ -0,0 +1,51 @@
+#!/bin/sh
+
+#
+#  Copyright (C) 2025 Volt Active Data Inc.
+# 
+#  Use of this source code is governed by an MIT
+#  license that can be found in the LICENSE file or at
+#  https://opensource.org/licenses/MIT.
+# 
+
+#
+# Send the same workload through Kafka and then straight to VoltDB, measuring
+# how long it takes to get through VoltDB each time. Compare the 'KAFKA:' and
+# 'DIRECT:' lines in the output - sent, acked or completed, and outstanding
+# per second - and the events per second, lag and backlog reported by
+# KafkaLatencyConsumer. Set KAFKA_GENERATOR to USAGE to compare usage reports
+# instead of credits.
+#
+
+USERCOUNT=$1
+ST=$2
+DURATION=$3
+MAXCREDIT=$4
+
+if 	
+	[ "$ST" = "" -o "$USERCOUNT" = "" -o "$DURATION" = "" -o "$MAXCREDIT" = "" ]
+then
+	echo Usage: $0 usercount tps duration max_credit
+
+	exit 1
+fi
+
+for SINK in KAFKA DIRECT
+do
+	echo "Sending via $SINK"
+	sh $HOME/voltdb-charglt/scripts/run_kafka_latency_consumer.sh `expr $DURATION + 30` &
+	sleep 5
+
+	# DIRECT needs the VoltDB hostnames, which we get by asking for batches of 1
+	if
+		[ "$SINK" = "DIRECT" ]
+	then
+		KAFKA_SINK=${SINK} sh $HOME/voltdb-charglt/scripts/run_kafka_addcredit_once.sh $USERCOUNT $ST $DURATION $MAXCREDIT 1
+	else
+		KAFKA_SINK=${SINK} sh $HOME/voltdb-charglt/scripts/run_kafka_addcredit_once.sh $USERCOUNT $ST $DURATION $MAXCREDIT
+	fi
+
+	wait
+done
+
+exit 0
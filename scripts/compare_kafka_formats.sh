@@ -0,0 +1,43 @@
+#!/bin/sh
+
+#
+#  Copyright (C) 2025 Volt Active Data Inc.
+# 
+#  Use of this source code is governed by an MIT
+#  license that can be found in the LICENSE file or at
+#  https://opensource.org/licenses/MIT.
+# 
+
+#
+# Send the same workload to Kafka as CSV and then as binary records, measuring
+# how long credits take to get through VoltDB each time. Compare the
+# 'bytes per record' and 'CPU ns per credit' lines in the output, and the
+# events per second reported by KafkaLatencyConsumer.
+#
+# The BINARY leg needs the formatter bundle from build_formatter_bundle.sh on
+# every VoltDB node.
+#
+
+USERCOUNT=$1
+ST=$2
+DURATION=$3
+MAXCREDIT=$4
+
+if 	
+	[ "$ST" = "" -o "$USERCOUNT" = "" -o "$DURATION" = "" -o "$MAXCREDIT" = "" ]
+then
+	echo Usage: $0 usercount tps duration max_credit
+
+	exit 1
+fi
+
+for FORMAT in CSV BINARY
+do
+	echo "Sending $FORMAT records"
+	sh $HOME/voltdb-charglt/scripts/run_kafka_latency_consumer.sh `expr $DURATION + 30` &
+	sleep 5
+	KAFKA_RECORD_FORMAT=${FORMAT} sh $HOME/voltdb-charglt/scripts/run_kafka_addcredit_once.sh $USERCOUNT $ST $DURATION $MAXCREDIT
+	wait
+done
+
+exit 0
@@ -0,0 +1,31 @@
+#!/bin/sh
+
+#
+#  Copyright (C) 2025 Volt Active Data Inc.
+# 
+#  Use of this source code is governed by an MIT
+#  license that can be found in the LICENSE file or at
+#  https://opensource.org/licenses/MIT.
+# 
+
+. $HOME/.profile
+
+CSVFILE=$1
+THREADS=$2
+MAXINFLIGHT=$3
+
+if 
+        [ "$CSVFILE" = "" -o "$THREADS" = "" -o "$MAXINFLIGHT" = "" ]
+then
+        echo Usage: $0 csvfile threads maxinflight
+
+        exit 1
+fi
+
+cd
+mkdir logs 2> /dev/null
+
+cd voltdb-charglt/jars
+
+echo `date` java ${JVMOPTS} -jar ImportChargingDemoData.jar `cat $HOME/.vdbhostnames`  $CSVFILE $THREADS $MAXINFLIGHT >> $HOME/logs/activity.log
+java ${JVMOPTS} -jar ImportChargingDemoData.jar `cat $HOME/.vdbhostnames`  $CSVFILE $THREADS $MAXINFLIGHT
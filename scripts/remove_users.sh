@@ -12,10 +12,13 @@
 
 TPS=200
 
+# If set we delete this many users per partition at a time using DeleteUserRange
+CHUNKSIZE=$1
+
 cd
 mkdir logs 2> /dev/null
 
 cd voltdb-charglt
 cd jars
-echo `date` java  ${JVMOPTS}  -jar DeleteChargingDemoData.jar  `cat $HOME/.vdbhostnames`  $TPS >> $HOME/logs/activity.log
-java  ${JVMOPTS}  -jar DeleteChargingDemoData.jar  `cat $HOME/.vdbhostnames`  $TPS
+echo `date` java  ${JVMOPTS}  -jar DeleteChargingDemoData.jar  `cat $HOME/.vdbhostnames`  $TPS $CHUNKSIZE >> $HOME/logs/activity.log
+java  ${JVMOPTS}  -jar DeleteChargingDemoData.jar  `cat $HOME/.vdbhostnames`  $TPS $CHUNKSIZE
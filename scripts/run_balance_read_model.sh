@@ -0,0 +1,39 @@
+#!/bin/sh
+
+#
+#  Copyright (C) 2025 Volt Active Data Inc.
+# 
+#  Use of this source code is governed by an MIT
+#  license that can be found in the LICENSE file or at
+#  https://opensource.org/licenses/MIT.
+# 
+
+. $HOME/.profile
+
+DURATION=$1
+SNAPSHOT_SECONDS=$2
+HTTP_PORT=$3
+KPORT=9092
+
+if 	
+	[ "$DURATION" = "" ]
+then
+	echo Usage: $0 duration [snapshotseconds] [httpport]
+
+	exit 1
+fi
+
+cd
+mkdir logs 2> /dev/null
+
+cd voltdb-charglt/jars 
+
+DT=`date '+%Y%m%d_%H%M'`
+
+KHOSTS=`cat $HOME/.vdbhostnames | sed '1,$s/,/:'${KPORT}',/g'`:${KPORT}
+
+echo "Building a read model of balances from USER_FINANCIAL_EVENTS for $DURATION seconds"
+echo `date` java ${JVMOPTS} -cp KafkaCreditDemo.jar org.voltdb.chargingdemo.kafka.BalanceReadModelConsumer ${KHOSTS} $DURATION $HOME/logs/balance_read_model.snapshot ${SNAPSHOT_SECONDS} ${HTTP_PORT} >> $HOME/logs/activity.log
+java ${JVMOPTS} -cp KafkaCreditDemo.jar org.voltdb.chargingdemo.kafka.BalanceReadModelConsumer ${KHOSTS} $DURATION $HOME/logs/balance_read_model.snapshot ${SNAPSHOT_SECONDS} ${HTTP_PORT} | tee -a $HOME/logs/${DT}_balance_read_model_`uname -n`.lst
+
+exit 0
@@ -14,12 +14,13 @@ USERCOUNT=$1
 ST=$2
 DURATION=$3
 MAXCREDIT=$4
+BATCHSIZE=$5
 KPORT=9092
 
 if 	
 	[ "$ST" = "" -o "$USERCOUNT" = "" -o "$DURATION" = "" -o "$MAXCREDIT" = "" ]
 then
-	echo Usage: $0 usercount tps duration max_credit
+	echo Usage: $0 usercount tps duration max_credit [batchsize]
 
 	exit 1
 fi
@@ -34,9 +35,17 @@ DT=`date '+%Y%m%d_%H%M'`
 
 KHOSTS=`cat $HOME/.vdbhostnames | sed '1,$s/,/:'${KPORT}',/g'`:${KPORT}
 
+# If we're batching credits we also need to ask VoltDB how users are partitioned
+BATCHARGS=
+if
+	[ "$BATCHSIZE" != "" ]
+then
+	BATCHARGS="${BATCHSIZE} `cat $HOME/.vdbhostnames`"
+fi
+
 echo "Starting a $DURATION second run at ${ST} Transactions Per Second"
-echo `date` java ${JVMOPTS}  -jar KafkaCreditDemo.jar ${KHOSTS} ${USERCOUNT} ${ST} $DURATION $MAXCREDIT  >> $HOME/logs/activity.log
-java ${JVMOPTS}  -jar KafkaCreditDemo.jar ${KHOSTS} ${USERCOUNT} ${ST} $DURATION $MAXCREDIT | tee -a $HOME/logs/${DT}_kafka__`uname -n`_${ST}.lst
+echo `date` java ${JVMOPTS}  -jar KafkaCreditDemo.jar ${KHOSTS} ${USERCOUNT} ${ST} $DURATION $MAXCREDIT ${BATCHARGS} >> $HOME/logs/activity.log
+java ${JVMOPTS}  -jar KafkaCreditDemo.jar ${KHOSTS} ${USERCOUNT} ${ST} $DURATION $MAXCREDIT ${BATCHARGS} | tee -a $HOME/logs/${DT}_kafka__`uname -n`_${ST}.lst
 sleep 2 
 
 exit 0
@@ -0,0 +1,37 @@
+#!/bin/sh
+
+#
+#  Copyright (C) 2025 Volt Active Data Inc.
+# 
+#  Use of this source code is governed by an MIT
+#  license that can be found in the LICENSE file or at
+#  https://opensource.org/licenses/MIT.
+# 
+
+. $HOME/.profile
+
+DURATION=$1
+KPORT=9092
+
+if 	
+	[ "$DURATION" = "" ]
+then
+	echo Usage: $0 duration
+
+	exit 1
+fi
+
+cd
+mkdir logs 2> /dev/null
+
+cd voltdb-charglt/jars 
+
+DT=`date '+%Y%m%d_%H%M'`
+
+KHOSTS=`cat $HOME/.vdbhostnames | sed '1,$s/,/:'${KPORT}',/g'`:${KPORT}
+
+echo "Measuring ADDCREDIT to USER_FINANCIAL_EVENTS latency for $DURATION seconds"
+echo `date` java ${JVMOPTS} -cp KafkaCreditDemo.jar org.voltdb.chargingdemo.kafka.KafkaLatencyConsumer ${KHOSTS} $DURATION >> $HOME/logs/activity.log
+java ${JVMOPTS} -cp KafkaCreditDemo.jar org.voltdb.chargingdemo.kafka.KafkaLatencyConsumer ${KHOSTS} $DURATION | tee -a $HOME/logs/${DT}_kafka_latency_`uname -n`.lst
+
+exit 0
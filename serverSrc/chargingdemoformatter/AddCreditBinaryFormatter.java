@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoformatter;
+
+import java.nio.ByteBuffer;
+
+import org.voltdb.importer.formatter.FormatException;
+import org.voltdb.importer.formatter.Formatter;
+
+/**
+ * Importer formatter that turns BinaryCreditRecords into AddCreditWithOptions
+ * parameters, so VoltDB doesn't have to parse CSV.
+ *
+ */
+public class AddCreditBinaryFormatter implements Formatter {
+
+    @Override
+    public Object[] transform(ByteBuffer payload) throws FormatException {
+
+        try {
+            return BinaryCreditRecord.decode(payload);
+        } catch (IllegalArgumentException e) {
+            throw new FormatException(e);
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoformatter;
+
+import java.util.Properties;
+
+import org.voltdb.importer.formatter.AbstractFormatterFactory;
+import org.voltdb.importer.formatter.Formatter;
+
+/**
+ * Bundle activator that hands out AddCreditBinaryFormatters. The bundle is
+ * built by scripts/build_formatter_bundle.sh.
+ *
+ */
+public class AddCreditBinaryFormatterFactory extends AbstractFormatterFactory {
+
+    @Override
+    public Formatter create(String formatName, Properties props) {
+        return new AddCreditBinaryFormatter();
+    }
+
+}
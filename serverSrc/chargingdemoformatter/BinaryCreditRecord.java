@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoformatter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed layout binary version of a credit for AddCreditWithOptions. Every
+ * record is RECORD_LENGTH bytes:
+ * <p>
+ * version (1), userId (8), amount (4), threadId (4), count (8), sentMs (8),
+ * responseMode (1)
+ * <p>
+ * Instead of sending the txnId we send the numbers it's made from, and
+ * rebuild it when we decode, so it looks the same as a txnId sent as CSV.
+ *
+ */
+public class BinaryCreditRecord {
+
+    public static final byte VERSION = 1;
+
+    public static final int RECORD_LENGTH = 1 + 8 + 4 + 4 + 8 + 8 + 1;
+
+    /**
+     * txnIds look like 'Kafka_thread_count_sentms'
+     */
+    public static final String TXN_ID_PREFIX = "Kafka_";
+
+    /**
+     * Write a credit into 'buffer', starting at position 0.
+     *
+     * @param buffer       at least RECORD_LENGTH bytes
+     * @param userId
+     * @param amount
+     * @param threadId     thread that sent it
+     * @param count        how many credits that thread had sent before
+     * @param sentMs       when it was sent
+     * @param responseMode CompactResponse.RESPONSE_MODE_FULL or
+     *                     RESPONSE_MODE_COMPACT
+     */
+    public static void encode(ByteBuffer buffer, long userId, int amount, int threadId, long count, long sentMs,
+            int responseMode) {
+
+        buffer.clear();
+        buffer.put(VERSION);
+        buffer.putLong(userId);
+        buffer.putInt(amount);
+        buffer.putInt(threadId);
+        buffer.putLong(count);
+        buffer.putLong(sentMs);
+        buffer.put((byte) responseMode);
+    }
+
+    /**
+     * Turn a record into parameters for AddCreditWithOptions. Old transactions
+     * are always cleaned up inline, the same as AddCredit does.
+     *
+     * @param buffer a record written by encode
+     * @return userId, extraCredit, txnId, inlineCleanup, responseMode
+     * @throws IllegalArgumentException if this isn't a record we understand
+     */
+    public static Object[] decode(ByteBuffer buffer) {
+
+        if (buffer.remaining() != RECORD_LENGTH) {
+            throw new IllegalArgumentException("Expected " + RECORD_LENGTH + " bytes, got " + buffer.remaining());
+        }
+
+        final byte version = buffer.get();
+
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown version " + version);
+        }
+
+        final long userId = buffer.getLong();
+        final long amount = buffer.getInt();
+        final int threadId = buffer.getInt();
+        final long count = buffer.getLong();
+        final long sentMs = buffer.getLong();
+        final int responseMode = buffer.get();
+
+        return new Object[] { userId, amount, getTxnId(threadId, count, sentMs), 1, responseMode };
+    }
+
+    /**
+     * @param threadId
+     * @param count
+     * @param sentMs
+     * @return txnId for a credit
+     */
+    public static String getTxnId(int threadId, long count, long sentMs) {
+        return TXN_ID_PREFIX + threadId + "_" + count + "_" + sentMs;
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+import java.util.HashSet;
+
+import org.voltdb.SQLStmt;
+import org.voltdb.TheHashinator;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+public class AddCreditBatch extends VoltProcedure {
+
+    // @formatter:off
+
+	public static final SQLStmt getUser = new SQLStmt(
+			"SELECT userid FROM user_table WHERE userid = ?;");
+
+	public static final SQLStmt getTxn = new SQLStmt("SELECT txn_time FROM user_recent_transactions "
+			+ "WHERE userid = ? AND user_txn_id = ?;");
+
+	public static final SQLStmt addTxn = new SQLStmt("INSERT INTO user_recent_transactions "
+			+ "(userid, user_txn_id, txn_time, approved_amount,spent_amount,purpose) VALUES (?,?,NOW,?,?,?);");
+
+	public static final SQLStmt reportFinancialEvent = new SQLStmt("INSERT INTO user_financial_events "
+			+ "(userid,amount,user_txn_id,message) VALUES (?,?,?,?);");
+
+	public static final SQLStmt getUserBalances = new SQLStmt(
+			"SELECT userid, balance FROM user_balance WHERE userid IN ? ORDER BY userid;");
+
+	public static final SQLStmt getCurrrentlyAllocated = new SQLStmt(
+			"select userid, sum(allocated_amount) allocated_amount from user_usage_table "
+			+ "where userid IN ? GROUP BY userid ORDER BY userid;");
+
+	// @formatter:on
+
+    /**
+     * Separates one credit from another in 'credits'
+     */
+    public static final String CREDIT_DELIMITER = ";";
+
+    /**
+     * Separates userid, amount and txnid within a credit
+     */
+    public static final String FIELD_DELIMITER = ":";
+
+    /**
+     * We do two SQL statements per credit, and Volt limits how many statements
+     * can be in a batch.
+     */
+    private static final int CREDITS_PER_SQL_BATCH = 90;
+
+    /**
+     * Version of AddCredit that adds many credits in one transaction. All the
+     * users must be in the same partition as 'partitionUserId'. Credits are
+     * passed as one string so this can be fed from a Kafka topic using the
+     * standard CSV format, e.g. "42:100:Txn1;57:200:Txn2".
+     *
+     * Each credit is treated the same way AddCredit treats it, except that
+     * credits for users we don't know about are skipped instead of aborting the
+     * whole batch. A credit for a user in some other partition would look
+     * exactly like an unknown user, so the whole batch is rejected if it
+     * contains one.
+     *
+     * @param partitionUserId any user in the partition we want to use
+     * @param credits         userid:amount:txnid entries, separated by ';'
+     * @param wantBalances    1 if we want balances and reservations for the
+     *                        users back.
+     * @return Balance and Credit info if wantBalances is 1
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long partitionUserId, String credits, int wantBalances) throws VoltAbortException {
+
+        final String[] creditArray = credits.split(CREDIT_DELIMITER);
+
+        final int partitionId = TheHashinator.getPartitionForParameter(VoltType.BIGINT, partitionUserId);
+
+        final long[] userIds = new long[creditArray.length];
+        final long[] amounts = new long[creditArray.length];
+        final String[] txnIds = new String[creditArray.length];
+
+        for (int i = 0; i < creditArray.length; i++) {
+
+            String[] fields = creditArray[i].split(FIELD_DELIMITER);
+
+            if (fields.length != 3) {
+                throw new VoltAbortException("Credit '" + creditArray[i] + "' should be userid:amount:txnid");
+            }
+
+            try {
+                userIds[i] = Long.parseLong(fields[0]);
+                amounts[i] = Long.parseLong(fields[1]);
+            } catch (NumberFormatException e) {
+                throw new VoltAbortException("Credit '" + creditArray[i] + "' has an invalid number");
+            }
+
+            if (TheHashinator.getPartitionForParameter(VoltType.BIGINT, userIds[i]) != partitionId) {
+                throw new VoltAbortException("Credit '" + creditArray[i] + "' is for a user that isn't in the same "
+                        + "partition as user " + partitionUserId);
+            }
+
+            txnIds[i] = fields[2];
+
+        }
+
+        int addedCount = 0;
+        int alreadyHappenedCount = 0;
+        int unknownUserCount = 0;
+
+        // So we don't trip over the same txn appearing twice in one batch...
+        HashSet<String> seenTxns = new HashSet<>();
+
+        for (int start = 0; start < creditArray.length; start += CREDITS_PER_SQL_BATCH) {
+
+            final int end = Math.min(start + CREDITS_PER_SQL_BATCH, creditArray.length);
+
+            // See if we know about these users and transactions...
+            for (int i = start; i < end; i++) {
+                voltQueueSQL(getUser, userIds[i]);
+                voltQueueSQL(getTxn, userIds[i], txnIds[i]);
+            }
+
+            VoltTable[] userAndTxn = voltExecuteSQL();
+
+            for (int i = start; i < end; i++) {
+
+                final VoltTable userTable = userAndTxn[(i - start) * 2];
+                final VoltTable txnTable = userAndTxn[((i - start) * 2) + 1];
+
+                if (!userTable.advanceRow()) {
+
+                    unknownUserCount++;
+
+                } else if (txnTable.advanceRow() || !seenTxns.add(userIds[i] + FIELD_DELIMITER + txnIds[i])) {
+
+                    alreadyHappenedCount++;
+
+                    // Record that it was resent, but with an amount of zero,
+                    // as user_balance adds up every amount...
+                    voltQueueSQL(reportFinancialEvent, userIds[i], 0, txnIds[i], "Credit already added");
+
+                } else {
+
+                    addedCount++;
+                    voltQueueSQL(addTxn, userIds[i], txnIds[i], 0, amounts[i], "Add Credit");
+                    voltQueueSQL(reportFinancialEvent, userIds[i], amounts[i], txnIds[i], "Added " + amounts[i]);
+                }
+            }
+
+            final boolean isFinalBatch = end == creditArray.length && wantBalances != 1;
+            voltExecuteSQL(isFinalBatch);
+        }
+
+        if (alreadyHappenedCount > 0 && addedCount == 0) {
+            this.setAppStatusCode(ReferenceData.STATUS_TXN_ALREADY_HAPPENED);
+        } else {
+            this.setAppStatusCode(ReferenceData.STATUS_CREDIT_ADDED);
+        }
+
+        this.setAppStatusString(addedCount + " added, " + alreadyHappenedCount + " already happened, "
+                + unknownUserCount + " unknown users");
+
+        if (wantBalances == 1) {
+            voltQueueSQL(getUserBalances, userIds);
+            voltQueueSQL(getCurrrentlyAllocated, userIds);
+            return voltExecuteSQL(true);
+        }
+
+        return new VoltTable[0];
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+import org.voltdb.VoltTable;
+
+public class AddCreditWithOptions extends AddCreditBase {
+
+    /**
+     * Version of AddCredit that lets the caller leave cleaning up old
+     * transactions to PurgeOldTransactions, and ask for a single
+     * CompactResponse row instead of separate balance and reservation tables.
+     *
+     * @param userId
+     * @param extraCredit
+     * @param txnId
+     * @param inlineCleanup 1 if we should also delete this user's old
+     *                      transaction records, as AddCredit does.
+     * @param responseMode  One of the CompactResponse.RESPONSE_MODE values
+     * @return Balance and Credit info
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long userId, long extraCredit, String txnId, int inlineCleanup, int responseMode)
+            throws VoltAbortException {
+        return addCredit(userId, extraCredit, txnId, inlineCleanup, responseMode);
+    }
+}
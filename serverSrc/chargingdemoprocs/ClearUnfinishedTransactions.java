@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+
+public class ClearUnfinishedTransactions extends VoltProcedure {
+
+    // @formatter:off
+
+    public static final SQLStmt removeUsage = new SQLStmt("DELETE "
+            + "FROM user_usage_table "
+            + "ORDER BY userid, sessionid LIMIT ?;");
+
+	// @formatter:on
+
+    /**
+     * Removes up to 'chunkSize' reservations left over from earlier runs from
+     * one partition. Callers keep calling it for each partition until it deletes
+     * less than 'chunkSize' rows.
+     *
+     * @param partitionKey - partition we want to clean up. Meant to be called
+     *                     using callAllPartitionProcedure.
+     * @param chunkSize    - most rows we'll delete in one call
+     * @return How many rows were deleted
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long partitionKey, int chunkSize) throws VoltAbortException {
+
+        voltQueueSQL(removeUsage, chunkSize);
+
+        VoltTable[] results = voltExecuteSQL(true);
+
+        this.setAppStatusCode(ReferenceData.STATUS_OK);
+
+        return results;
+
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+/**
+ * Layout of the single row table ReportQuotaUsage and AddCredit return when
+ * asked for a compact response. Clients can read columns by position instead of
+ * looking for balances and reservations in separate tables.
+ *
+ */
+public class CompactResponse {
+
+    /**
+     * Return balance and reservation tables, and a status string
+     */
+    public static final int RESPONSE_MODE_FULL = 0;
+
+    /**
+     * Return one CompactResponse row and no status string
+     */
+    public static final int RESPONSE_MODE_COMPACT = 1;
+
+    /**
+     * Return one CompactResponse row and a status string
+     */
+    public static final int RESPONSE_MODE_COMPACT_WITH_STATUS_STRING = 2;
+
+    public static final int STATUS_COLUMN = 0;
+    public static final int BALANCE_COLUMN = 1;
+    public static final int RESERVED_COLUMN = 2;
+    public static final int SESSIONID_COLUMN = 3;
+    public static final int APPROVED_COLUMN = 4;
+
+    /**
+     * @param status
+     * @param balance   balance before reservations are taken into account
+     * @param reserved  total currently reserved
+     * @param sessionId
+     * @param approved  amount approved by this call
+     * @return A one row VoltTable
+     */
+    public static VoltTable newCompactResponse(byte status, long balance, long reserved, long sessionId,
+            long approved) {
+
+        VoltTable t = new VoltTable(new VoltTable.ColumnInfo("status", VoltType.TINYINT),
+                new VoltTable.ColumnInfo("balance", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("reserved", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("sessionid", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("approved", VoltType.BIGINT));
+
+        t.addRow(status, balance, reserved, sessionId, approved);
+
+        return t;
+    }
+
+}
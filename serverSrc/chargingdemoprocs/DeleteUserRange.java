@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+public class DeleteUserRange extends VoltProcedure {
+
+    // @formatter:off
+
+	public static final SQLStmt getUsers = new SQLStmt("SELECT userid FROM user_table "
+			+ "WHERE userid BETWEEN ? AND ? ORDER BY userid LIMIT ?;");
+
+	public static final SQLStmt delUsers = new SQLStmt("DELETE FROM user_table WHERE userid BETWEEN ? AND ?;");
+	public static final SQLStmt delUserUsage = new SQLStmt("DELETE FROM user_usage_table WHERE userid BETWEEN ? AND ?;");
+	public static final SQLStmt delBalance = new SQLStmt("DELETE FROM user_balance WHERE userid BETWEEN ? AND ?;");
+	public static final SQLStmt delTxns = new SQLStmt("DELETE FROM user_recent_transactions WHERE userid BETWEEN ? AND ?;");
+
+	// @formatter:on
+
+    /**
+     * Deletes up to 'chunkSize' users in the range minId to maxId from one
+     * partition, along with everything else we know about them - the same things
+     * DelUser deletes. Callers keep calling it for a partition, starting from
+     * 'next_userid', until 'finished' is 1.
+     *
+     * @param partitionKey - a value from '@GetPartitionKeys INTEGER' for the
+     *                     partition we want to delete from.
+     * @param minId
+     * @param maxId
+     * @param chunkSize    - most users we'll delete in one call
+     * @return One row with deleted_users, deleted_rows, next_userid and finished
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long partitionKey, long minId, long maxId, int chunkSize) throws VoltAbortException {
+
+        voltQueueSQL(getUsers, minId, maxId, chunkSize);
+
+        VoltTable users = voltExecuteSQL()[0];
+
+        final int deletedUsers = users.getRowCount();
+        long lastId = maxId;
+
+        // If we found a full chunk we stop at the last user we found, otherwise we
+        // tidy up everything up to maxId...
+        if (deletedUsers == chunkSize) {
+            users.advanceToRow(deletedUsers - 1);
+            lastId = users.getLong("userid");
+        }
+
+        voltQueueSQL(delUserUsage, minId, lastId);
+        voltQueueSQL(delBalance, minId, lastId);
+        voltQueueSQL(delTxns, minId, lastId);
+        voltQueueSQL(delUsers, minId, lastId);
+
+        VoltTable[] results = voltExecuteSQL(true);
+
+        long deletedRows = 0;
+
+        for (VoltTable result : results) {
+            deletedRows += result.asScalarLong();
+        }
+
+        VoltTable progress = new VoltTable(new VoltTable.ColumnInfo("deleted_users", VoltType.INTEGER),
+                new VoltTable.ColumnInfo("deleted_rows", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("next_userid", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("finished", VoltType.TINYINT));
+
+        progress.addRow(deletedUsers, deletedRows, lastId + 1, lastId >= maxId ? 1 : 0);
+
+        this.setAppStatusCode(ReferenceData.STATUS_OK);
+
+        return new VoltTable[] { progress };
+    }
+}
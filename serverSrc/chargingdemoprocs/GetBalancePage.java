@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+
+public class GetBalancePage extends VoltProcedure {
+
+    // @formatter:off
+
+    public static final SQLStmt getBalances = new SQLStmt("SELECT u.userid, NVL(b.balance,0) balance "
+            + "FROM user_table u "
+            + "LEFT OUTER JOIN user_balance b ON u.userid = b.userid "
+            + "WHERE u.userid >= ? "
+            + "ORDER BY u.userid LIMIT ?;");
+
+    public static final SQLStmt getReservations = new SQLStmt("SELECT userid, sessionid, allocated_amount "
+            + "FROM user_usage_table "
+            + "WHERE userid BETWEEN ? AND ? "
+            + "ORDER BY userid, sessionid;");
+
+	// @formatter:on
+
+    /**
+     * Returns balances for up to 'pageSize' users in one partition, starting at
+     * 'startUserId'. Callers read a whole partition by calling it again with the
+     * last userid they got plus one, until they get less than 'pageSize' rows.
+     * We also return outstanding reservations for the same users, so a client
+     * can pick up where a previous run left off.
+     *
+     * @param partitionKey - a value from '@GetPartitionKeys INTEGER' for the
+     *                     partition we want to read.
+     * @param startUserId
+     * @param pageSize     - most users we'll return
+     * @return userid and balance, in userid order, followed by userid,
+     *         sessionid and allocated_amount for each session users on this
+     *         page have open, in userid and sessionid order
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long partitionKey, long startUserId, int pageSize) throws VoltAbortException {
+
+        voltQueueSQL(getBalances, startUserId, pageSize);
+
+        VoltTable balances = voltExecuteSQL()[0];
+
+        long lastUserId = startUserId - 1;
+
+        if (balances.getRowCount() > 0) {
+            balances.advanceToRow(balances.getRowCount() - 1);
+            lastUserId = balances.getLong("userid");
+            balances.resetRowPosition();
+        }
+
+        voltQueueSQL(getReservations, startUserId, lastUserId);
+
+        VoltTable reservations = voltExecuteSQL(true)[0];
+
+        this.setAppStatusCode(ReferenceData.STATUS_OK);
+
+        return new VoltTable[] { balances, reservations };
+
+    }
+}
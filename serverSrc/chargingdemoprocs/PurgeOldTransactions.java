@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+
+public class PurgeOldTransactions extends VoltProcedure {
+
+    // @formatter:off
+
+    public static final SQLStmt removeOldTransactions = new SQLStmt("DELETE "
+            + "FROM user_recent_transactions "
+            + "WHERE txn_time < DATEADD(SECOND, ?, NOW) "
+            + "ORDER BY txn_time, userid, user_txn_id LIMIT ?;");
+
+	// @formatter:on
+
+    /**
+     * Removes up to 'batchSize' transaction records that are older than
+     * 'maxAgeSeconds' from one partition. This used to happen inside
+     * ReportQuotaUsage and AddCredit. Callers keep calling it for a partition
+     * until it deletes less than 'batchSize' rows.
+     *
+     * @param partitionKey  - a value from '@GetPartitionKeys INTEGER' for the
+     *                      partition we want to clean up.
+     * @param maxAgeSeconds - how long we need to keep transactions for to spot
+     *                      duplicates
+     * @param batchSize     - most rows we'll delete in one call
+     * @return How many rows were deleted
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long partitionKey, int maxAgeSeconds, int batchSize) throws VoltAbortException {
+
+        voltQueueSQL(removeOldTransactions, maxAgeSeconds * -1, batchSize);
+
+        VoltTable[] results = voltExecuteSQL(true);
+
+        this.setAppStatusCode(ReferenceData.STATUS_OK);
+
+        return results;
+
+    }
+}
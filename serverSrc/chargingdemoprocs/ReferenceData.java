@@ -25,6 +25,8 @@ public class ReferenceData {
     public static final byte STATUS_RECORD_ALREADY_SOFTLOCKED = 53;
     public static final byte STATUS_RECORD_HAS_BEEN_SOFTLOCKED = 54;
     public static final byte STATUS_CREDIT_ADDED = 56;
+    public static final byte STATUS_RECORD_VERSION_CHANGED = 57;
+    public static final byte STATUS_RECORD_SOFTLOCKED_NOT_MODIFIED = 58;
 
     public static final int LOCK_TIMEOUT_MS = 50;
 
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+import org.voltdb.VoltTable;
+
+public class ReportQuotaUsageWithOptions extends ReportQuotaUsageBase {
+
+    /**
+     * Version of ReportQuotaUsage that lets the caller choose whether old
+     * transaction records are deleted as we go and what comes back.
+     *
+     * @param userId         - Identifies a user
+     * @param unitsUsed      - How many units of credit were used. Initially this
+     *                       will be zero, as we start by reserving credit.
+     * @param unitsWanted    - How many units of credit the user is looking for.
+     *                       Some or all of this may be granted.
+     * @param inputSessionId - a Unique ID for a session. A negative number means a
+     *                       new session.
+     * @param txnId          - A unique ID for the network call. This is needed so
+     *                       we can tell if a transaction completed, but didn't get
+     *                       back to the client.
+     * @param inlineCleanup  - 1 if we should also delete this user's old
+     *                       transaction records. Otherwise PurgeOldTransactions
+     *                       does this in the background.
+     * @param responseMode   - One of the CompactResponse.RESPONSE_MODE values. In
+     *                       the compact modes we return one CompactResponse row
+     *                       instead of reading the balance again.
+     * @return
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long userId, int unitsUsed, int unitsWanted, long inputSessionId, String txnId,
+            int inlineCleanup, int responseMode) throws VoltAbortException {
+        return reportQuotaUsage(userId, unitsUsed, unitsWanted, inputSessionId, txnId, inlineCleanup,
+                responseMode);
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+public class UnlockUsers extends VoltProcedure {
+
+    // @formatter:off
+
+    public static final SQLStmt getLockedUsers = new SQLStmt("SELECT userid "
+            + "FROM user_table "
+            + "WHERE user_softlock_sessionid IS NOT NULL "
+            + "ORDER BY userid LIMIT ?;");
+
+    public static final SQLStmt unlockUsers = new SQLStmt("UPDATE user_table "
+            + "SET user_softlock_sessionid = null, user_softlock_expiry = null "
+            + "WHERE userid BETWEEN ? AND ? "
+            + "AND user_softlock_sessionid IS NOT NULL;");
+
+	// @formatter:on
+
+    /**
+     * Removes up to 'chunkSize' soft locks left over from earlier runs from one
+     * partition. Callers keep calling it for each partition until it unlocks less
+     * than 'chunkSize' users.
+     *
+     * @param partitionKey - partition we want to clean up. Meant to be called
+     *                     using callAllPartitionProcedure.
+     * @param chunkSize    - most users we'll unlock in one call
+     * @return How many users were unlocked
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long partitionKey, int chunkSize) throws VoltAbortException {
+
+        voltQueueSQL(getLockedUsers, chunkSize);
+
+        VoltTable lockedUsers = voltExecuteSQL()[0];
+
+        this.setAppStatusCode(ReferenceData.STATUS_OK);
+
+        if (lockedUsers.getRowCount() == 0) {
+            VoltTable noneUnlocked = new VoltTable(new VoltTable.ColumnInfo("modified_tuples", VoltType.BIGINT));
+            noneUnlocked.addRow(0);
+            return new VoltTable[] { noneUnlocked };
+        }
+
+        lockedUsers.advanceRow();
+        final long firstUserId = lockedUsers.getLong("userid");
+
+        lockedUsers.advanceToRow(lockedUsers.getRowCount() - 1);
+        final long lastUserId = lockedUsers.getLong("userid");
+
+        voltQueueSQL(unlockUsers, firstUserId, lastUserId);
+
+        return voltExecuteSQL(true);
+
+    }
+}
@@ -27,7 +27,7 @@ public class UpdateLockedUser extends VoltProcedure {
 
 	public static final SQLStmt removeUserLockAndUpdateJSON = new SQLStmt(
 			"UPDATE user_table SET user_softlock_sessionid = NULL, user_softlock_expiry = NULL "
-					+ "   ,user_json_object = ? WHERE userid = ?;");
+					+ "   ,user_json_object = ?, user_version = user_version + 1 WHERE userid = ?;");
 
 	Gson gson = new Gson();
 
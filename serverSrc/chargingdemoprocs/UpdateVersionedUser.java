@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.types.TimestampType;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+public class UpdateVersionedUser extends VoltProcedure {
+
+    // @formatter:off
+
+	public static final SQLStmt getUser = new SQLStmt("SELECT userid, user_version, user_json_object "
+			+ ",user_softlock_sessionid, user_softlock_expiry "
+			+ "FROM user_table WHERE userid = ?;");
+
+	public static final SQLStmt updateJSONAndVersion = new SQLStmt(
+			"UPDATE user_table SET user_json_object = ?, user_version = ? WHERE userid = ?;");
+
+	Gson gson = new Gson();
+
+	// @formatter:on
+
+    /**
+     * Optimistic alternative to GetAndLockUser/UpdateLockedUser. The update only
+     * happens if 'expectedVersion' is still the current version of the user. This
+     * means a client that already knows the version can update a user in one round
+     * trip instead of two.
+     *
+     * @param userId
+     * @param expectedVersion    version the caller last saw
+     * @param jsonPayload
+     * @param deltaOperationName
+     * @return new version (accessible via ClientStatus.getAppStatusString()). If
+     *         the version has changed we return the current row, and the current
+     *         version in the app status string.
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long userId, long expectedVersion, String jsonPayload, String deltaOperationName)
+            throws VoltAbortException {
+
+        voltQueueSQL(getUser, userId);
+
+        VoltTable[] userRecord = voltExecuteSQL();
+
+        // Sanity check: Does this user exist?
+        if (!userRecord[0].advanceRow()) {
+            throw new VoltAbortException("User " + userId + " does not exist");
+        }
+
+        final long currentVersion = userRecord[0].getLong("user_version");
+        final String oldJsonPayload = userRecord[0].getString("user_json_object");
+        final TimestampType currentTimestamp = new TimestampType(this.getTransactionTime());
+        final TimestampType lockingSessionExpiryTimestamp = userRecord[0]
+                .getTimestampAsTimestamp("user_softlock_expiry");
+
+        // Somebody else got there first. Send back what they did so the caller can
+        // try again without having to read the record...
+        if (currentVersion != expectedVersion) {
+
+            this.setAppStatusCode(ReferenceData.STATUS_RECORD_VERSION_CHANGED);
+            this.setAppStatusString("" + currentVersion);
+            return userRecord;
+        }
+
+        // Respect soft locks taken by clients using GetAndLockUser...
+        if (lockingSessionExpiryTimestamp != null && lockingSessionExpiryTimestamp.compareTo(currentTimestamp) > 0) {
+
+            final long lockingSessionId = userRecord[0].getLong("user_softlock_sessionid");
+            this.setAppStatusCode(ReferenceData.STATUS_RECORD_ALREADY_SOFTLOCKED);
+            this.setAppStatusString("User " + userId + " has already been locked by session " + lockingSessionId);
+            return voltExecuteSQL(true);
+        }
+
+        String newJsonPayload = jsonPayload;
+
+        if (deltaOperationName != null && deltaOperationName.equals(ExtraUserData.NEW_LOYALTY_NUMBER)) {
+
+            try {
+                ExtraUserData eud = gson.fromJson(oldJsonPayload, ExtraUserData.class);
+                eud.loyaltySchemeNumber = Long.parseLong(jsonPayload);
+                newJsonPayload = gson.toJson(eud);
+            } catch (JsonSyntaxException e) {
+                throw new VoltAbortException("Json syntax exception while working with User " + userId + ", ' "
+                        + oldJsonPayload + "' and '" + jsonPayload);
+            } catch (NumberFormatException e) {
+                throw new VoltAbortException("Invalid loyalty card number: '" + jsonPayload);
+            }
+
+        }
+
+        final long newVersion = currentVersion + 1;
+
+        voltQueueSQL(updateJSONAndVersion, newJsonPayload, newVersion, userId);
+        this.setAppStatusCode(ReferenceData.STATUS_OK);
+
+        // Note how we pass the new version back...
+        this.setAppStatusString("" + newVersion);
+
+        return voltExecuteSQL(true);
+
+    }
+}
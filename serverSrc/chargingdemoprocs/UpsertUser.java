@@ -30,6 +30,9 @@ public class UpsertUser extends VoltProcedure {
 			"INSERT INTO user_table (userid, user_json_object,user_last_seen) "
 					+ "VALUES (?,?,?);");
 
+	public static final SQLStmt bumpUserVersion = new SQLStmt(
+			"UPDATE user_table SET user_version = user_version + 1 WHERE userid = ?;");
+
 	public static final SQLStmt reportAddcreditEvent = new SQLStmt(
 			"INSERT INTO user_financial_events (userid,amount,user_txn_id,message) VALUES (?,?,?,?);");
 
@@ -68,6 +71,8 @@ public class UpsertUser extends VoltProcedure {
                 final String status = "Updated user " + userId + " - added credit of " + addBalance + "; balance now "
                         + currentBalance;
 
+                // Anyone caching this user needs to know it's changed...
+                voltQueueSQL(bumpUserVersion, userId);
                 voltQueueSQL(reportAddcreditEvent, userId, addBalance, txnId, "user upserted");
                 this.setAppStatusCode(ReferenceData.STATUS_OK);
                 this.setAppStatusString(status);
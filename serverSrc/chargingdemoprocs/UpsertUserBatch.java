@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package chargingdemoprocs;
+
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.types.TimestampType;
+
+public class UpsertUserBatch extends VoltProcedure {
+
+    // @formatter:off
+
+	public static final SQLStmt getUser = new SQLStmt("SELECT userid FROM user_table WHERE userid = ?;");
+
+	public static final SQLStmt getTxn = new SQLStmt("SELECT txn_time FROM user_recent_transactions "
+			+ "WHERE userid = ? AND user_txn_id = ?;");
+
+	public static final SQLStmt addTxn = new SQLStmt("INSERT INTO user_recent_transactions "
+			+ "(userid, user_txn_id, txn_time, approved_amount,spent_amount,purpose) VALUES (?,?,NOW,?,?,?);");
+
+	public static final SQLStmt insertUser = new SQLStmt(
+			"INSERT INTO user_table (userid, user_json_object,user_last_seen) "
+					+ "VALUES (?,?,?);");
+
+	public static final SQLStmt bumpUserVersion = new SQLStmt(
+			"UPDATE user_table SET user_version = user_version + 1 WHERE userid = ?;");
+
+	public static final SQLStmt reportAddcreditEvent = new SQLStmt(
+			"INSERT INTO user_financial_events (userid,amount,user_txn_id,message) VALUES (?,?,?,?);");
+
+	// @formatter:on
+
+    /**
+     * We do two reads and up to three writes per user, and Volt limits how many
+     * statements can be in a batch.
+     */
+    private static final int USERS_PER_SQL_BATCH = 60;
+
+    /**
+     * Version of UpsertUser that creates or tops up many users in one
+     * transaction. All the users must be in the same partition as
+     * 'partitionUserId'. Each user ends up in exactly the same state as if
+     * UpsertUser had been called for it with a txnId of 'txnIdPrefix' followed by
+     * the userid, so a bulk load can be followed by - or repeated with - single
+     * calls.
+     *
+     * @param partitionUserId any user in the partition we want to use
+     * @param userIds
+     * @param addBalances     credit for each user in userIds
+     * @param json            payload used for every new user
+     * @param purpose
+     * @param lastSeen
+     * @param txnIdPrefix     e.g. "Create_"
+     * @return nothing, counts are in the status string
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(long partitionUserId, long[] userIds, long[] addBalances, String json, String purpose,
+            TimestampType lastSeen, String txnIdPrefix) throws VoltAbortException {
+
+        if (userIds.length != addBalances.length) {
+            throw new VoltAbortException(
+                    "Got " + userIds.length + " userids but " + addBalances.length + " balances");
+        }
+
+        int createdCount = 0;
+        int updatedCount = 0;
+        int alreadyHappenedCount = 0;
+
+        for (int start = 0; start < userIds.length; start += USERS_PER_SQL_BATCH) {
+
+            final int end = Math.min(start + USERS_PER_SQL_BATCH, userIds.length);
+
+            for (int i = start; i < end; i++) {
+                voltQueueSQL(getUser, userIds[i]);
+                voltQueueSQL(getTxn, userIds[i], txnIdPrefix + userIds[i]);
+            }
+
+            VoltTable[] userAndTxn = voltExecuteSQL();
+
+            for (int i = start; i < end; i++) {
+
+                final VoltTable userTable = userAndTxn[(i - start) * 2];
+                final VoltTable txnTable = userAndTxn[((i - start) * 2) + 1];
+                final String txnId = txnIdPrefix + userIds[i];
+
+                if (txnTable.advanceRow()) {
+
+                    alreadyHappenedCount++;
+
+                } else {
+
+                    voltQueueSQL(addTxn, userIds[i], txnId, 0, addBalances[i], "Upsert user");
+
+                    if (!userTable.advanceRow()) {
+
+                        createdCount++;
+                        voltQueueSQL(insertUser, userIds[i], json, lastSeen);
+                        voltQueueSQL(reportAddcreditEvent, userIds[i], addBalances[i], txnId, "user created");
+
+                    } else {
+
+                        updatedCount++;
+                        voltQueueSQL(bumpUserVersion, userIds[i]);
+                        voltQueueSQL(reportAddcreditEvent, userIds[i], addBalances[i], txnId, "user upserted");
+
+                    }
+                }
+            }
+
+            voltExecuteSQL(end == userIds.length);
+        }
+
+        if (alreadyHappenedCount > 0 && createdCount == 0 && updatedCount == 0) {
+            this.setAppStatusCode(ReferenceData.STATUS_TXN_ALREADY_HAPPENED);
+        } else {
+            this.setAppStatusCode(ReferenceData.STATUS_OK);
+        }
+
+        this.setAppStatusString(createdCount + " created, " + updatedCount + " updated, " + alreadyHappenedCount
+                + " already happened");
+
+        return new VoltTable[0];
+    }
+}
@@ -13,23 +13,44 @@ import java.io.IOException;
 
 
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
 import org.voltdb.chargingdemo.callbacks.AddCreditCallback;
-import org.voltdb.chargingdemo.callbacks.ComplainOnErrorCallback;
+import org.voltdb.chargingdemo.callbacks.CheckpointCallback;
 import org.voltdb.chargingdemo.callbacks.ReportQuotaUsageCallback;
 import org.voltdb.chargingdemo.callbacks.UserKVState;
+import org.voltdb.chargingdemo.engine.AdaptiveLimitEngine;
+import org.voltdb.chargingdemo.engine.BackpressureTracker;
+import org.voltdb.chargingdemo.engine.Client2Engine;
+import org.voltdb.chargingdemo.engine.ConcurrencyLimiter;
+import org.voltdb.chargingdemo.engine.EngineStatsContext;
+import org.voltdb.chargingdemo.engine.FanOutEngine;
+import org.voltdb.chargingdemo.engine.InstrumentedEngine;
+import org.voltdb.chargingdemo.engine.LegacyClientEngine;
+import org.voltdb.chargingdemo.engine.ProcedureEngine;
+import org.voltdb.chargingdemo.engine.RetryingEngine;
 import org.voltdb.client.Client;
 import org.voltdb.client.ClientConfig;
 import org.voltdb.client.ClientFactory;
+import org.voltdb.client.ClientImpl;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ClientResponseWithPartitionKey;
+import org.voltdb.client.ClientStats;
 import org.voltdb.client.NoConnectionsException;
 import org.voltdb.client.ProcCallException;
 import org.voltdb.voltutil.stats.SafeHistogramCache;
 
 import com.google.gson.Gson;
 
+import chargingdemoprocs.CompactResponse;
 import chargingdemoprocs.ExtraUserData;
 import chargingdemoprocs.ReferenceData;
 
@@ -42,14 +63,91 @@ public abstract class BaseChargingDemo {
     public static final int HISTOGRAM_SIZE_MS = 1000000;
 
     public static final String REPORT_QUOTA_USAGE = "ReportQuotaUsage";
+    public static final String ADD_CREDIT = "AddCredit";
+    public static final String REPORT_QUOTA_USAGE_WITH_OPTIONS = "ReportQuotaUsageWithOptions";
+    public static final String ADD_CREDIT_WITH_OPTIONS = "AddCreditWithOptions";
+    public static final String REPORT_QUOTA_USAGE_DECODE = "ReportQuotaUsage_DECODE_NS";
+    public static final String ADD_CREDIT_DECODE = "AddCredit_DECODE_NS";
+    public static final String RESPONSES = "_RESPONSES";
+    public static final String RESPONSE_BYTES = "_RESPONSE_BYTES";
+    public static final int DECODE_HISTOGRAM_SIZE_NS = 100000;
     public static final String KV_PUT = "KV_PUT";
     public static final String KV_GET = "KV_GET";
+    public static final String KV_GET_RESPONSES = "KV_GET_RESPONSES";
+    public static final String KV_GET_RESPONSE_BYTES = "KV_GET_RESPONSE_BYTES";
+    public static final String KV_GET_NOT_MODIFIED = "KV_GET_NOT_MODIFIED";
 
     public static SafeHistogramCache shc = SafeHistogramCache.getInstance();
 
+    public static BackpressureTracker backpressure = new BackpressureTracker(shc);
+
     public static final String UNABLE_TO_MEET_REQUESTED_TPS = "UNABLE_TO_MEET_REQUESTED_TPS";
     public static final String EXTRA_MS = "EXTRA_MS";
 
+    public static final String KV_MODE = "KV_MODE";
+    public static final String KV_MODE_LOCK = "LOCK";
+    public static final String KV_MODE_OPTIMISTIC = "OPTIMISTIC";
+
+    public static final String KV_READ_MODE = "KV_READ_MODE";
+    public static final String KV_READ_MODE_FULL = "FULL";
+    public static final String KV_READ_MODE_LEAN = "LEAN";
+
+    public static final String TXN_CLEANUP = "TXN_CLEANUP";
+    public static final String TXN_CLEANUP_DEFERRED = "DEFERRED";
+    public static final String TXN_CLEANUP_INLINE = "INLINE";
+
+    public static final String RESPONSE_MODE = "RESPONSE_MODE";
+    public static final String RESPONSE_MODE_FULL = "FULL";
+    public static final String RESPONSE_MODE_COMPACT = "COMPACT";
+
+    public static final String RECONCILE = "RECONCILE";
+    public static final String RECONCILE_NO = "NO";
+    public static final String RECONCILE_YES = "YES";
+
+    public static final String BOOTSTRAP = "BOOTSTRAP";
+    public static final String BOOTSTRAP_NO = "NO";
+    public static final String BOOTSTRAP_YES = "YES";
+
+    public static final String CLIENT_TOPOLOGY = "CLIENT_TOPOLOGY";
+    public static final String CLIENT_TOPOLOGY_AWARE = "AWARE";
+    public static final String CLIENT_TOPOLOGY_STATIC = "STATIC";
+
+    public static final String CLIENT_ENGINE = "CLIENT_ENGINE";
+    public static final String CLIENT2_MAX_OUTSTANDING = "CLIENT2_MAX_OUTSTANDING";
+    public static final String CLIENT2_TIMEOUT_MS = "CLIENT2_TIMEOUT_MS";
+
+    public static final String CLIENT_COUNT = "CLIENT_COUNT";
+
+    public static final String CLIENT_RETRIES = "CLIENT_RETRIES";
+    public static final String CLIENT_RETRY_TIMEOUT_MS = "CLIENT_RETRY_TIMEOUT_MS";
+    public static final String CLIENT_RETRY_BACKOFF_MS = "CLIENT_RETRY_BACKOFF_MS";
+
+    public static final String CLIENT_LIMITER = "CLIENT_LIMITER";
+    public static final String CLIENT_LIMITER_NONE = "NONE";
+    public static final String CLIENT_LIMITER_INITIAL = "CLIENT_LIMITER_INITIAL";
+    public static final String CLIENT_LIMITER_MAX = "CLIENT_LIMITER_MAX";
+
+    public static final String CLIENT_BLOCKED_THRESHOLD_US = "CLIENT_BLOCKED_THRESHOLD_US";
+
+    /**
+     * How long we wait for the client to learn how the cluster is partitioned
+     */
+    public static final long HASHINATOR_WAIT_MS = 10000;
+
+    /**
+     * Most rows we change in one call when resetting between runs
+     */
+    public static final int RESET_CHUNK_SIZE = 5000;
+
+    /**
+     * How many times in a row we let a partition fail when resetting before we
+     * give up
+     */
+    public static final int RESET_MAX_FAILED_ROUNDS = 5;
+
+    public static final String CREATE_CHECKPOINT_FILE = "CreateChargingDemoData.checkpoint";
+    public static final String DELETE_CHECKPOINT_FILE = "DeleteChargingDemoData.checkpoint";
+
 
     /**
      * Print a formatted message.
@@ -67,22 +165,49 @@ public abstract class BaseChargingDemo {
 
     /**
      * Connect to VoltDB using a comma delimited hostname list.
+     * <p>
+     * By default the client is topology aware: it connects to every host in the
+     * cluster, not just the ones we list, reconnects to hosts that go away and
+     * come back, and sends each single partition call straight to the host with
+     * that partition's leader, so VoltDB doesn't have to forward it. Setting
+     * CLIENT_TOPOLOGY to STATIC only uses the hosts we list and doesn't
+     * reconnect, which is how this used to work.
      *
      * @param commaDelimitedHostnames
      * @return
      * @throws Exception
      */
-    @SuppressWarnings("deprecation")
     protected static Client connectVoltDB(String commaDelimitedHostnames) throws Exception {
+        return connectVoltDB(commaDelimitedHostnames, backpressure);
+    }
+
+    /**
+     * Connect to VoltDB, reporting backpressure to a tracker of our own
+     * choosing.
+     *
+     * @param commaDelimitedHostnames
+     * @param clientBackpressure      tracker for this client's backpressure
+     * @return
+     * @throws Exception
+     */
+    @SuppressWarnings("deprecation")
+    protected static Client connectVoltDB(String commaDelimitedHostnames, BackpressureTracker clientBackpressure)
+            throws Exception {
         Client client = null;
         ClientConfig config = null;
 
+        final boolean topologyAware = CLIENT_TOPOLOGY_AWARE.equals(getClientTopologyIfSet());
+
         try {
             msg("Logging into VoltDB");
 
-            config = new ClientConfig(); // "admin", "idontknow");
-            //config.setTopologyChangeAware(true);
-            //config.setReconnectOnConnectionLoss(true);
+            config = new ClientConfig("", "", new ClusterConnectionListener(shc, clientBackpressure)); // "admin", "idontknow");
+            config.setTopologyChangeAware(topologyAware);
+
+            // STATIC clients don't reconnect, same as they never did...
+            if (topologyAware) {
+                config.setReconnectOnConnectionLoss(true);
+            }
             //config.setHeavyweight(true);
 
             client = ClientFactory.createClient(config);
@@ -103,10 +228,144 @@ public abstract class BaseChargingDemo {
             throw new Exception("VoltDB connection failed.." + e.getMessage(), e);
         }
 
+        // One bad host is OK, as long as we got to one of them...
+        if (client.getConnectedHostList().isEmpty()) {
+            throw new Exception("VoltDB connection failed, unable to connect to any of " + commaDelimitedHostnames);
+        }
+
+        // Until the client knows where the partitions are it sends calls
+        // anywhere...
+        if (topologyAware) {
+            waitForHashinator((ClientImpl) client);
+        }
+
+        msg("Connected to " + client.getConnectedHostList().size() + " hosts");
+
         return client;
 
     }
 
+    /**
+     * Connect to VoltDB so we can find out which partition a user is in.
+     *
+     * @param commaDelimitedHostnames
+     * @return a ClientImpl that knows how the cluster is partitioned
+     * @throws Exception
+     */
+    public static ClientImpl getPartitioningClient(String commaDelimitedHostnames) throws Exception {
+
+        ClientConfig config = new ClientConfig();
+        config.setTopologyChangeAware(true);
+
+        ClientImpl client = (ClientImpl) ClientFactory.createClient(config);
+
+        for (String element : commaDelimitedHostnames.split(",")) {
+            msg("Connect to " + element + "...");
+            try {
+                client.createConnection(element);
+            } catch (Exception e) {
+                msg(e.getMessage());
+            }
+        }
+
+        waitForHashinator(client);
+
+        return client;
+    }
+
+    /**
+     * Create the engine the benchmarks send their calls through. CLIENT_ENGINE
+     * picks LEGACY, which uses mainClient, or CLIENT2, which makes its own
+     * Client2 connection using CLIENT2_MAX_OUTSTANDING and CLIENT2_TIMEOUT_MS.
+     * If CLIENT_COUNT is more than 1 we make that many, each with its own
+     * connections and BackpressureTracker, and a FanOutEngine to send each
+     * user's calls to one of them.
+     * If CLIENT_RETRIES is more than 0 a RetryingEngine resends AddCredit and
+     * ReportQuotaUsage calls that time out. If CLIENT_LIMITER is AIMD or VEGAS
+     * we wrap it in an AdaptiveLimitEngine.
+     * Whatever we end up with is wrapped in an InstrumentedEngine so we can see
+     * when the client is holding things up. Calls that take more than
+     * CLIENT_BLOCKED_THRESHOLD_US to queue count as blocked.
+     *
+     * @param commaDelimitedHostnames
+     * @param mainClient
+     * @return a ProcedureEngine
+     * @throws Exception
+     */
+    protected static ProcedureEngine createEngine(String commaDelimitedHostnames, Client mainClient)
+            throws Exception {
+
+        final boolean client2 = Client2Engine.NAME.equals(getClientEngineIfSet());
+        final int clientCount = Math.max(1, getNumberIfSet(CLIENT_COUNT, 1));
+
+        ProcedureEngine[] engines = new ProcedureEngine[clientCount];
+        BackpressureTracker[] clientBackpressure = new BackpressureTracker[clientCount];
+
+        for (int i = 0; i < clientCount; i++) {
+
+            // The first client uses the tracker mainClient already reports to...
+            clientBackpressure[i] = i == 0 ? backpressure : new BackpressureTracker(shc);
+
+            if (client2) {
+                engines[i] = new Client2Engine(commaDelimitedHostnames, shc, clientBackpressure[i],
+                        getNumberIfSet(CLIENT2_MAX_OUTSTANDING, Client2Engine.DEFAULT_MAX_OUTSTANDING),
+                        getNumberIfSet(CLIENT2_TIMEOUT_MS, Client2Engine.DEFAULT_TIMEOUT_MS));
+            } else if (i == 0) {
+                engines[i] = new LegacyClientEngine(mainClient);
+            } else {
+                engines[i] = new LegacyClientEngine(connectVoltDB(commaDelimitedHostnames, clientBackpressure[i]),
+                        true);
+            }
+        }
+
+        ProcedureEngine engine = clientCount == 1 ? engines[0] : new FanOutEngine(engines);
+
+        final int retries = getNumberIfSet(CLIENT_RETRIES, 0);
+
+        if (retries > 0) {
+            engine = new RetryingEngine(engine, shc, new HashSet<>(Arrays.asList(ADD_CREDIT,
+                    ADD_CREDIT_WITH_OPTIONS, REPORT_QUOTA_USAGE, REPORT_QUOTA_USAGE_WITH_OPTIONS)),
+                    retries,
+                    getNumberIfSet(CLIENT_RETRY_TIMEOUT_MS, RetryingEngine.DEFAULT_TIMEOUT_MS),
+                    getNumberIfSet(CLIENT_RETRY_BACKOFF_MS, RetryingEngine.DEFAULT_BACKOFF_MS));
+        }
+
+        final String limiterAlgorithm = getClientLimiterIfSet();
+
+        if (!CLIENT_LIMITER_NONE.equals(limiterAlgorithm)) {
+            engine = new AdaptiveLimitEngine(engine, new ConcurrencyLimiter(limiterAlgorithm, shc,
+                    getNumberIfSet(CLIENT_LIMITER_INITIAL, ConcurrencyLimiter.DEFAULT_INITIAL_LIMIT),
+                    getNumberIfSet(CLIENT_LIMITER_MAX, ConcurrencyLimiter.DEFAULT_MAX_LIMIT)));
+        }
+
+        InstrumentedEngine instrumentedEngine = new InstrumentedEngine(engine, shc, clientBackpressure,
+                getNumberIfSet(CLIENT_BLOCKED_THRESHOLD_US, InstrumentedEngine.DEFAULT_BLOCKED_THRESHOLD_US));
+        instrumentedEngine.start();
+
+        return instrumentedEngine;
+    }
+
+    /**
+     * Wait for a topology aware client to find out how the cluster is
+     * partitioned, which it does in the background.
+     *
+     * @param client
+     * @throws Exception if it takes more than HASHINATOR_WAIT_MS
+     */
+    private static void waitForHashinator(ClientImpl client) throws Exception {
+
+        final long giveUpMs = System.currentTimeMillis() + HASHINATOR_WAIT_MS;
+
+        while (!client.isHashinatorInitialized()) {
+
+            if (giveUpMs < System.currentTimeMillis()) {
+                throw new Exception("Unable to get partitioning information from VoltDB");
+            }
+
+            Thread.sleep(10);
+        }
+    }
+
     /**
      * Convenience method to generate a JSON payload.
      *
@@ -146,6 +405,11 @@ public abstract class BaseChargingDemo {
     protected static void deleteAllUsers(int minId, int maxId, int tpMs, Client mainClient)
             throws InterruptedException, IOException, NoConnectionsException {
 
+        // If we died part way through last time carry on from where we got to...
+        ProgressCheckpoint checkpoint = new ProgressCheckpoint(DELETE_CHECKPOINT_FILE,
+                "DeleteChargingDemoData to " + maxId, new long[] { minId });
+        minId = (int) checkpoint.getResumeId(0);
+
         msg("Deleting users from " + minId + " to " + maxId);
 
         final long startMsDelete = System.currentTimeMillis();
@@ -171,13 +435,17 @@ public abstract class BaseChargingDemo {
             }
 
             // Put a request to delete a user into the queue.
-            ComplainOnErrorCallback deleteUserCallback = new ComplainOnErrorCallback();
+            CheckpointCallback deleteUserCallback = new CheckpointCallback(checkpoint, 0, i);
             mainClient.callProcedure(deleteUserCallback, "DelUser", i);
 
             if (i % 100000 == 1) {
                 msg("Deleted " + i + " users...");
             }
 
+            if (i % 1000 == 0) {
+                checkpoint.saveIfDue();
+            }
+
         }
 
         // Because we've put messages into the clients queue we
@@ -185,8 +453,84 @@ public abstract class BaseChargingDemo {
         msg("All " + (maxId - minId + 1) + " entries in queue, waiting for it to drain...");
         mainClient.drain();
 
-        final long entriesPerMs = (maxId - minId + 1) / (System.currentTimeMillis() - startMsDelete);
+        final long entriesPerMs = (maxId - minId + 1) / Math.max(1, System.currentTimeMillis() - startMsDelete);
         msg("Deleted " + entriesPerMs + " users per ms...");
+
+        checkpoint.finish(new long[] { maxId });
+    }
+
+    /**
+     *
+     * Delete all users in a range by running a PartitionRangeDeleter for each
+     * partition at the same time. Each call to DeleteUserRange deletes up to
+     * chunkSize users from one partition.
+     *
+     * @param minId
+     * @param maxId
+     * @param chunkSize
+     * @param mainClient
+     * @throws InterruptedException
+     * @throws IOException
+     * @throws NoConnectionsException
+     * @throws ProcCallException
+     */
+    protected static void deleteAllUsersByRange(long minId, long maxId, int chunkSize, Client mainClient)
+            throws InterruptedException, IOException, NoConnectionsException, ProcCallException {
+
+        final long[] partitionKeys = getPartitionKeys(mainClient);
+
+        msg("Deleting users from " + minId + " to " + maxId + " in " + partitionKeys.length
+                + " partitions, up to " + chunkSize + " users per call");
+
+        final long startMsDelete = System.currentTimeMillis();
+
+        Thread[] deleterThreads = new Thread[partitionKeys.length];
+
+        for (int i = 0; i < partitionKeys.length; i++) {
+            PartitionRangeDeleter deleter = new PartitionRangeDeleter(mainClient, shc, partitionKeys[i], minId, maxId,
+                    chunkSize);
+            deleterThreads[i] = new Thread(deleter, "PartitionRangeDeleter_" + i);
+            deleterThreads[i].start();
+        }
+
+        long lastReportMs = System.currentTimeMillis();
+        long lastReportUsers = 0;
+
+        for (Thread deleterThread : deleterThreads) {
+
+            while (deleterThread.isAlive()) {
+
+                deleterThread.join(1000);
+
+                // Tell people how we're getting on every 10 seconds...
+                if (lastReportMs + 10000 < System.currentTimeMillis()) {
+
+                    final long deletedUsers = shc.getCounter(PartitionRangeDeleter.RANGE_DELETED_USERS);
+                    final long elapsedMs = Math.max(1, System.currentTimeMillis() - lastReportMs);
+
+                    msg("Deleted " + deletedUsers + " users so far, "
+                            + (((deletedUsers - lastReportUsers) * 1000) / elapsedMs) + " users per second...");
+
+                    lastReportMs = System.currentTimeMillis();
+                    lastReportUsers = deletedUsers;
+                }
+            }
+        }
+
+        final long elapsedMs = Math.max(1, System.currentTimeMillis() - startMsDelete);
+        final long deletedUsers = shc.getCounter(PartitionRangeDeleter.RANGE_DELETED_USERS);
+        final long deletedRows = shc.getCounter(PartitionRangeDeleter.RANGE_DELETED_ROWS);
+
+        for (long partitionKey : partitionKeys) {
+            msg("Partition key " + partitionKey + ": "
+                    + shc.getCounter(PartitionRangeDeleter.RANGE_DELETED_USERS_PARTITION + partitionKey)
+                    + " users deleted");
+        }
+
+        msg("Deleted " + deletedUsers + " users and " + deletedRows + " rows in " + elapsedMs + "ms, "
+                + ((deletedUsers * 1000) / elapsedMs) + " users per second, " + ((deletedRows * 1000) / elapsedMs)
+                + " rows per second");
+        msg(shc.get(PartitionRangeDeleter.DELETE_USER_RANGE).toString());
     }
 
     /**
@@ -210,7 +554,12 @@ public abstract class BaseChargingDemo {
         int tpThisMs = 0;
         Random r = new Random();
 
-        for (int i = 0; i < userCount; i++) {
+        // If we died part way through last time carry on from where we got to...
+        ProgressCheckpoint checkpoint = new ProgressCheckpoint(CREATE_CHECKPOINT_FILE,
+                "CreateChargingDemoData " + userCount + " users", new long[] { 0 });
+        final int firstUserId = (int) checkpoint.getResumeId(0);
+
+        for (int i = firstUserId; i < userCount; i++) {
 
             if (tpThisMs++ > tpMs) {
 
@@ -222,7 +571,7 @@ public abstract class BaseChargingDemo {
                 tpThisMs = 0;
             }
 
-            ComplainOnErrorCallback upsertUserCallback = new ComplainOnErrorCallback();
+            CheckpointCallback upsertUserCallback = new CheckpointCallback(checkpoint, 0, i);
 
             mainClient.callProcedure(upsertUserCallback, "UpsertUser", i, r.nextInt(initialCredit), ourJson, "Created",
                     new Date(startMsUpsert), "Create_" + i);
@@ -232,13 +581,102 @@ public abstract class BaseChargingDemo {
 
             }
 
+            if (i % 1000 == 0) {
+                checkpoint.saveIfDue();
+            }
+
         }
 
         msg("All " + userCount + " entries in queue, waiting for it to drain...");
         mainClient.drain();
 
-        long entriesPerMS = userCount / (System.currentTimeMillis() - startMsUpsert);
+        long entriesPerMS = (userCount - firstUserId) / Math.max(1, System.currentTimeMillis() - startMsUpsert);
         msg("Upserted " + entriesPerMS + " users per ms...");
+
+        checkpoint.finish(new long[] { userCount - 1 });
+    }
+
+    /**
+     * Create userCount users using several BulkUserLoader threads, each of which
+     * sends batches of users for one partition to UpsertUserBatch. Users end up
+     * the same as if upsertAllUsers had been used.
+     *
+     * @param userCount
+     * @param tpMs          users per ms across all threads
+     * @param ourJson
+     * @param initialCredit
+     * @param client        a client that knows how the cluster is partitioned
+     * @param threadCount
+     * @param batchSize     users per UpsertUserBatch call
+     * @throws InterruptedException
+     * @throws IOException
+     * @throws NoConnectionsException
+     * @throws ProcCallException
+     */
+    protected static void bulkUpsertAllUsers(int userCount, int tpMs, String ourJson, int initialCredit,
+            ClientImpl client, int threadCount, int batchSize)
+            throws InterruptedException, IOException, NoConnectionsException, ProcCallException {
+
+        msg("Bulk loading " + userCount + " users using " + threadCount + " threads and batches of " + batchSize);
+
+        final long startMsUpsert = System.currentTimeMillis();
+        final Date lastSeen = new Date(startMsUpsert);
+        final int usersPerThread = (userCount + threadCount - 1) / threadCount;
+        final int tpMsPerThread = Math.max(1, tpMs / threadCount);
+
+        long[] firstUserIds = new long[threadCount];
+        long[] lastUserIds = new long[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            firstUserIds[i] = (long) i * usersPerThread;
+            lastUserIds[i] = Math.min(firstUserIds[i] + usersPerThread, userCount) - 1;
+        }
+
+        // If we died part way through last time each thread carries on from where
+        // it got to...
+        ProgressCheckpoint checkpoint = new ProgressCheckpoint(CREATE_CHECKPOINT_FILE,
+                "CreateChargingDemoData " + userCount + " users", firstUserIds);
+
+        Thread[] loaderThreads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+
+            BulkUserLoader loader = new BulkUserLoader(client, shc, checkpoint, i, checkpoint.getResumeId(i),
+                    lastUserIds[i], batchSize, tpMsPerThread, ourJson, initialCredit, lastSeen);
+
+            loaderThreads[i] = new Thread(loader, "BulkUserLoader_" + i);
+            loaderThreads[i].start();
+        }
+
+        for (Thread loaderThread : loaderThreads) {
+            while (loaderThread.isAlive()) {
+                loaderThread.join(ProgressCheckpoint.DEFAULT_SAVE_INTERVAL_MS);
+                checkpoint.saveIfDue();
+            }
+        }
+
+        msg("All " + userCount + " entries in queue, waiting for it to drain...");
+        client.drain();
+
+        checkpoint.finish(lastUserIds);
+
+        final long elapsedMs = Math.max(1, System.currentTimeMillis() - startMsUpsert);
+        msg("Upserted " + (userCount / elapsedMs) + " users per ms...");
+
+        long totalLoaded = 0;
+
+        for (long partitionKey : getPartitionKeys(client)) {
+
+            final long partitionId = client.getPartitionForParameter(VoltType.BIGINT.getValue(), partitionKey);
+            final long loaded = shc.getCounter(BulkUserLoader.LOADED_USERS_PARTITION + partitionId);
+            totalLoaded += loaded;
+
+            msg("Partition " + partitionId + ": " + loaded + " users, " + ((loaded * 1000) / elapsedMs)
+                    + " users per second");
+        }
+
+        msg(totalLoaded + " users loaded");
+        msg(shc.get(BulkUserLoader.UPSERT_USER_BATCH).toString());
     }
 
     /**
@@ -303,8 +741,15 @@ public abstract class BaseChargingDemo {
      * @param globalQueryFreqSeconds
      * @param jsonsize
      * @param mainClient
+     * @param engine          what we send the benchmark's calls through
      * @param deltaProportion
      * @param extraMs
+     * @param kvMode          KV_MODE_LOCK to use GetAndLockUser/UpdateLockedUser,
+     *                        KV_MODE_OPTIMISTIC to use UpdateVersionedUser
+     * @param kvReadMode      KV_READ_MODE_LEAN to only fetch records when they
+     *                        have changed while locking
+     * @param payloadDistribution how full update payload sizes vary around
+     *                        jsonsize - see PayloadGenerator
      * @return true if >=90% of requested throughput was achieved.
      * @throws InterruptedException
      * @throws IOException
@@ -312,21 +757,33 @@ public abstract class BaseChargingDemo {
      * @throws ProcCallException
      */
     protected static boolean runKVBenchmark(int userCount, int tpMs, int durationSeconds, int globalQueryFreqSeconds,
-            int jsonsize, Client mainClient, int deltaProportion, int extraMs)
+            int jsonsize, Client mainClient, ProcedureEngine engine, int deltaProportion, int extraMs, String kvMode,
+            String kvReadMode,
+            String payloadDistribution)
             throws InterruptedException, IOException, NoConnectionsException, ProcCallException {
 
+        final boolean optimistic = KV_MODE_OPTIMISTIC.equals(kvMode);
+        final boolean leanReads = KV_READ_MODE_LEAN.equals(kvReadMode);
+
         long lastGlobalQueryMs = 0;
 
         UserKVState[] userState = new UserKVState[userCount];
 
         Random r = new Random();
 
-        Gson gson = new Gson();
+        // Make payloads now so we don't have to while sending requests...
+        PayloadGenerator payloads = new PayloadGenerator(jsonsize, payloadDistribution,
+                PayloadGenerator.DEFAULT_POOL_SIZE, shc);
 
         for (int i = 0; i < userCount; i++) {
             userState[i] = new UserKVState(i, shc);
         }
 
+        // Updates release locks other sessions may be waiting for...
+        engine.setPriority("UpdateLockedUser", ProcedureEngine.PRIORITY_HIGHEST);
+
+        EngineStatsContext routingStats = engine.createStatsContext();
+
         final long startMsRun = System.currentTimeMillis();
         long currentMs = System.currentTimeMillis();
         int tpThisMs = 0;
@@ -340,6 +797,8 @@ public abstract class BaseChargingDemo {
         int contestedLockCount = 0;
         int fullUpdate = 0;
         int deltaUpdate = 0;
+        int versionReadCount = 0;
+        int optimisticUpdateCount = 0;
 
         while (endtimeMs > System.currentTimeMillis()) {
 
@@ -366,6 +825,41 @@ public abstract class BaseChargingDemo {
 
                 inFlightCount++;
 
+            } else if (optimistic) {
+
+                if (userState[oursession].getUserStatus() == UserKVState.STATUS_LOCKED_BY_SOMEONE_ELSE
+                        && userState[oursession].getOtherLockTimeMs() + ReferenceData.LOCK_TIMEOUT_MS > System
+                                .currentTimeMillis()) {
+
+                    contestedLockCount++;
+
+                } else if (userState[oursession].getVersion() == UserKVState.UNKNOWN_VERSION) {
+
+                    // We only need to read a user once - after that we learn the
+                    // version from our own updates.
+                    userState[oursession].startTran();
+                    userState[oursession].setStatus(UserKVState.STATUS_READING_VERSION);
+                    engine.callProcedure(userState[oursession], "GetUser", oursession);
+                    versionReadCount++;
+
+                } else {
+
+                    userState[oursession].startTran();
+                    userState[oursession].setStatus(UserKVState.STATUS_UPDATING_IF_VERSION_MATCHES);
+                    optimisticUpdateCount++;
+
+                    if (deltaProportion > r.nextInt(101)) {
+                        deltaUpdate++;
+                        engine.callProcedure(userState[oursession], "UpdateVersionedUser", oursession,
+                                userState[oursession].getVersion(), getNewLoyaltyCardNumber(r),
+                                ExtraUserData.NEW_LOYALTY_NUMBER);
+                    } else {
+                        fullUpdate++;
+                        engine.callProcedure(userState[oursession], "UpdateVersionedUser", oursession,
+                                userState[oursession].getVersion(), payloads.next(), null);
+                    }
+                }
+
             } else if (userState[oursession].getUserStatus() == UserKVState.STATUS_LOCKED_BY_SOMEONE_ELSE) {
 
                 if (userState[oursession].getOtherLockTimeMs() + ReferenceData.LOCK_TIMEOUT_MS < System
@@ -373,7 +867,7 @@ public abstract class BaseChargingDemo {
 
                     userState[oursession].startTran();
                     userState[oursession].setStatus(UserKVState.STATUS_TRYING_TO_LOCK);
-                    mainClient.callProcedure(userState[oursession], "GetAndLockUser", oursession);
+                    getAndLockUser(engine, userState[oursession], oursession, leanReads);
                     lockCount++;
 
                 } else {
@@ -384,7 +878,7 @@ public abstract class BaseChargingDemo {
 
                 userState[oursession].startTran();
                 userState[oursession].setStatus(UserKVState.STATUS_TRYING_TO_LOCK);
-                mainClient.callProcedure(userState[oursession], "GetAndLockUser", oursession);
+                getAndLockUser(engine, userState[oursession], oursession, leanReads);
                 lockCount++;
 
             } else if (userState[oursession].getUserStatus() == UserKVState.STATUS_LOCKED) {
@@ -398,13 +892,13 @@ public abstract class BaseChargingDemo {
                     // number. For
                     // large values stored as JSON this can have a dramatic effect on network
                     // bandwidth
-                    mainClient.callProcedure(userState[oursession], "UpdateLockedUser", oursession,
+                    engine.callProcedure(userState[oursession], "UpdateLockedUser", oursession,
                             userState[oursession].getLockId(), getNewLoyaltyCardNumber(r),
                             ExtraUserData.NEW_LOYALTY_NUMBER);
                 } else {
                     fullUpdate++;
-                    mainClient.callProcedure(userState[oursession], "UpdateLockedUser", oursession,
-                            userState[oursession].getLockId(), getExtraUserDataAsJsonString(jsonsize, gson, r), null);
+                    engine.callProcedure(userState[oursession], "UpdateLockedUser", oursession,
+                            userState[oursession].getLockId(), payloads.next(), null);
                 }
 
             }
@@ -427,29 +921,69 @@ public abstract class BaseChargingDemo {
 
         msg(tranCount + " transactions done...");
         msg("All entries in queue, waiting for it to drain...");
-        mainClient.drain();
+        engine.drain();
         msg("Queue drained...");
 
         long transactionsPerMs = tranCount / (System.currentTimeMillis() - startMsRun);
         msg("processed " + transactionsPerMs + " entries per ms while doing transactions...");
 
         long lockFailCount = 0;
+        long versionChangedCount = 0;
+        long lockLostCount = 0;
         for (int i = 0; i < userCount; i++) {
             lockFailCount += userState[i].getLockedBySomeoneElseCount();
+            versionChangedCount += userState[i].getVersionChangedCount();
+            lockLostCount += userState[i].getLockLostCount();
         }
 
+        msg("KV mode = " + kvMode + ", KV read mode = " + kvReadMode);
         msg(inFlightCount + " events where a tx was in flight were observed");
         msg(lockCount + " lock attempts");
         msg(contestedLockCount + " contested lock attempts");
         msg(lockFailCount + " lock attempt failures");
+        msg(lockLostCount + " locked updates rejected because someone else locked the record");
+        msg(versionReadCount + " version reads");
+        msg(optimisticUpdateCount + " optimistic updates");
+        msg(versionChangedCount + " optimistic updates rejected because version changed");
         msg(fullUpdate + " full updates");
         msg(deltaUpdate + " delta updates");
 
+        payloads.reportStats(shc);
+        msg(payloads.getGeneratedCount() + " " + payloadDistribution + " payloads sent, "
+                + payloads.getGeneratedBytes() + " bytes");
+
+        if (payloads.getGeneratedCount() > 0) {
+            msg((payloads.getGeneratedBytes() / payloads.getGeneratedCount()) + " bytes per payload");
+        }
+
+        // An 'abort' is any attempt to change a record that was refused because of
+        // another session...
+        double abortPct = 0;
+
+        if (optimistic && optimisticUpdateCount > 0) {
+            abortPct = (100.0 * (versionChangedCount + lockFailCount)) / optimisticUpdateCount;
+        } else if (!optimistic && lockCount > 0) {
+            abortPct = (100.0 * (lockFailCount + lockLostCount)) / lockCount;
+        }
+
+        msg("Abort rate = " + abortPct + "%");
+
+        final long readResponses = shc.getCounter(KV_GET_RESPONSES);
+        final long readResponseBytes = shc.getCounter(KV_GET_RESPONSE_BYTES);
+
+        msg(readResponses + " read responses, " + readResponseBytes + " bytes");
+        msg(shc.getCounter(KV_GET_NOT_MODIFIED) + " reads where record was not modified");
+
+        if (readResponses > 0) {
+            msg((readResponseBytes / readResponses) + " bytes per read response");
+        }
+
         double tps = tranCount;
         tps = tps / (System.currentTimeMillis() - startMsRun);
         tps = tps * 1000;
 
         reportRunLatencyStats(tpMs, tps);
+        reportRequestDistribution(engine, routingStats);
 
         // Declare victory if we got >= 90% of requested TPS...
         if (tps / (tpMs * 1000) > .9) {
@@ -460,6 +994,33 @@ public abstract class BaseChargingDemo {
         return false;
     }
 
+    /**
+     * Lock a user, using GetAndLockUserIfChanged if we want lean reads.
+     * 
+     * @param engine
+     * @param userState
+     * @param userId
+     * @param leanReads  true if we only want the record sent if it has changed.
+     *                   If we've never seen it we also ask for transactions and
+     *                   usage.
+     * @throws IOException
+     * @throws NoConnectionsException
+     */
+    private static void getAndLockUser(ProcedureEngine engine, UserKVState userState, int userId,
+            boolean leanReads) throws IOException, NoConnectionsException {
+
+        if (leanReads) {
+
+            final int wantDetail = userState.getVersion() == UserKVState.UNKNOWN_VERSION ? 1 : 0;
+            engine.callProcedure(userState, "GetAndLockUserIfChanged", userId, userState.getVersion(),
+                    wantDetail);
+
+        } else {
+            engine.callProcedure(userState, "GetAndLockUser", userId);
+        }
+
+    }
+
     /**
      * Used when we need to really slow down below 1 tx per ms.. 
      * @param extraMs an arbitrary extra delay.
@@ -489,8 +1050,7 @@ public abstract class BaseChargingDemo {
 
         msg("Clearing unfinished transactions from prior runs...");
 
-        mainClient.callProcedure("@AdHoc", "DELETE FROM user_usage_table;");
-        msg("...done");
+        resetAllPartitions(mainClient, "ClearUnfinishedTransactions", "reservations");
 
     }
 
@@ -508,12 +1068,85 @@ public abstract class BaseChargingDemo {
 
         msg("Clearing locked sessions from prior runs...");
 
-        mainClient.callProcedure("@AdHoc",
-                "UPDATE user_table SET user_softlock_sessionid = null, user_softlock_expiry = null WHERE user_softlock_sessionid IS NOT NULL;");
-        msg("...done");
+        resetAllPartitions(mainClient, "UnlockUsers", "locks");
 
     }
 
+    /**
+     * Call a reset procedure such as UnlockUsers in every partition at once,
+     * over and over, until no partition has a full chunk of work left. Each call
+     * only touches RESET_CHUNK_SIZE rows, so we never hold up the cluster for long.
+     * A partition that fails is tried again in the next round, but if some
+     * partition keeps failing for RESET_MAX_FAILED_ROUNDS rounds in a row we stop
+     * and say the reset is incomplete.
+     *
+     * @param mainClient
+     * @param procName   a procedure whose parameters are partition key and chunk
+     *                   size, and which returns how many rows it changed
+     * @param rowName    what we're getting rid of, for messages
+     * @return true if every partition finished
+     * @throws IOException
+     * @throws NoConnectionsException
+     * @throws ProcCallException
+     */
+    protected static boolean resetAllPartitions(Client mainClient, String procName, String rowName)
+            throws IOException, NoConnectionsException, ProcCallException {
+
+        final long startMs = System.currentTimeMillis();
+        long lastReportMs = startMs;
+        long rowsChanged = 0;
+        boolean moreToDo = true;
+        int failedRounds = 0;
+
+        while (moreToDo) {
+
+            moreToDo = false;
+            boolean failedThisRound = false;
+
+            ClientResponseWithPartitionKey[] responses = mainClient.callAllPartitionProcedure(procName,
+                    RESET_CHUNK_SIZE);
+
+            for (ClientResponseWithPartitionKey response : responses) {
+
+                if (response.response.getStatus() != ClientResponse.SUCCESS) {
+                    msg(procName + " failed for partition key " + response.partitionKey + ": "
+                            + response.response.getStatusString());
+
+                    // Try it again next time round...
+                    failedThisRound = true;
+                    moreToDo = true;
+                    continue;
+                }
+
+                final long partitionRowsChanged = response.response.getResults()[0].asScalarLong();
+                rowsChanged += partitionRowsChanged;
+
+                if (partitionRowsChanged >= RESET_CHUNK_SIZE) {
+                    moreToDo = true;
+                }
+            }
+
+            if (!failedThisRound) {
+                failedRounds = 0;
+            } else if (++failedRounds >= RESET_MAX_FAILED_ROUNDS) {
+                msg("...INCOMPLETE. " + procName + " failed " + failedRounds
+                        + " times in a row, some " + rowName + " have not been cleared. " + rowsChanged + " "
+                        + rowName + " cleared in " + (System.currentTimeMillis() - startMs) + "ms");
+                return false;
+            }
+
+            if (moreToDo && lastReportMs + 10000 < System.currentTimeMillis()) {
+                msg("..." + rowsChanged + " " + rowName + " cleared so far...");
+                lastReportMs = System.currentTimeMillis();
+            }
+        }
+
+        final long elapsedMs = Math.max(1, System.currentTimeMillis() - startMs);
+        msg("...done. " + rowsChanged + " " + rowName + " cleared in " + elapsedMs + "ms, "
+                + ((rowsChanged * 1000) / elapsedMs) + " per second");
+        return true;
+    }
+
     /**
      *
      * Run a transaction benchmark for userCount users at tpMs per ms.
@@ -524,7 +1157,22 @@ public abstract class BaseChargingDemo {
      * @param globalQueryFreqSeconds how often we check on global stats and a single
      *                               user
      * @param mainClient
+     * @param engine                 what we send AddCredit and ReportQuotaUsage
+     *                               through
      * @param extraMS
+     * @param txnCleanupMode         TXN_CLEANUP_INLINE if ReportQuotaUsage and
+     *                               AddCredit should delete old transactions,
+     *                               TXN_CLEANUP_DEFERRED if we run a
+     *                               TransactionHistorySweeper instead
+     * @param responseMode           RESPONSE_MODE_COMPACT if we want a single
+     *                               CompactResponse row from ReportQuotaUsage and
+     *                               AddCredit
+     * @param reconcileMode          RECONCILE_YES if we keep a ShadowLedger of
+     *                               what we think each balance should be and
+     *                               check it against the server afterwards
+     * @param bootstrapMode          BOOTSTRAP_YES if we read every user's
+     *                               balance, reservations and session from the
+     *                               server before we start
      * @return true if within 90% of targeted TPS
      * @throws InterruptedException
      * @throws IOException
@@ -532,9 +1180,14 @@ public abstract class BaseChargingDemo {
      * @throws ProcCallException
      */
     protected static boolean runTransactionBenchmark(int userCount, int tpMs, int durationSeconds,
-            int globalQueryFreqSeconds, Client mainClient, int extraMs)
+            int globalQueryFreqSeconds, Client mainClient, ProcedureEngine engine, int extraMs, String txnCleanupMode,
+            String responseMode, String reconcileMode, String bootstrapMode)
             throws InterruptedException, IOException, NoConnectionsException, ProcCallException {
 
+        final boolean compactResponse = RESPONSE_MODE_COMPACT.equals(responseMode);
+        final int procResponseMode = compactResponse ? CompactResponse.RESPONSE_MODE_COMPACT
+                : CompactResponse.RESPONSE_MODE_FULL;
+
         // Used to track changes and be unique when we are running multiple threads
         final long pid = getPid();
 
@@ -549,6 +1202,38 @@ public abstract class BaseChargingDemo {
             users[i] = new UserTransactionState(i, Long.MAX_VALUE);
         }
 
+        if (BOOTSTRAP_YES.equals(bootstrapMode)) {
+            msg("Reading client records from server...");
+            UserStateBootstrapper.bootstrap(mainClient, shc, users);
+        }
+
+        final int inlineCleanup = TXN_CLEANUP_INLINE.equals(txnCleanupMode) ? 1 : 0;
+        TransactionHistorySweeper sweeper = null;
+        Thread sweeperThread = null;
+
+        if (inlineCleanup == 0) {
+            sweeper = new TransactionHistorySweeper(mainClient, shc, TransactionHistorySweeper.DEFAULT_MAX_AGE_SECONDS,
+                    TransactionHistorySweeper.DEFAULT_BATCH_SIZE, TransactionHistorySweeper.DEFAULT_PAUSE_MS);
+            sweeperThread = new Thread(sweeper, "TransactionHistorySweeper");
+            sweeperThread.setDaemon(true);
+            sweeperThread.start();
+        }
+
+        ShadowLedger ledger = null;
+
+        if (RECONCILE_YES.equals(reconcileMode)) {
+            msg("Taking snapshot of balances for reconciliation...");
+            ledger = new ShadowLedger(userCount);
+            final long snapshotMs = PartitionBalanceScanner.scanAllPartitions(mainClient, shc,
+                    PartitionBalanceScanner.DEFAULT_PAGE_SIZE, ledger);
+            msg("Snapshot took " + snapshotMs + "ms");
+        }
+
+        // Usage reports hold up a live session, a top up can wait a little...
+        engine.setPriority(REPORT_QUOTA_USAGE_WITH_OPTIONS, ProcedureEngine.PRIORITY_HIGHEST);
+
+        EngineStatsContext routingStats = engine.createStatsContext();
+
         final long startMsRun = System.currentTimeMillis();
         long currentMs = System.currentTimeMillis();
         int tpThisMs = 0;
@@ -593,23 +1278,27 @@ public abstract class BaseChargingDemo {
 
                     final long extraCredit = r.nextInt(1000) + 1000;
 
-                    AddCreditCallback addCreditCallback = new AddCreditCallback(users[randomuser]);
+                    AddCreditCallback addCreditCallback = new AddCreditCallback(users[randomuser], shc,
+                            compactResponse, ledger, extraCredit);
 
-                    mainClient.callProcedure(addCreditCallback, "AddCredit", randomuser, extraCredit,
-                            "AddCreditOnShortage_" + pid + "_" + addCreditCount + "_" + System.currentTimeMillis());
+                    engine.callProcedure(addCreditCallback, ADD_CREDIT_WITH_OPTIONS, randomuser, extraCredit,
+                            "AddCreditOnShortage_" + pid + "_" + addCreditCount + "_" + System.currentTimeMillis(),
+                            inlineCleanup, procResponseMode);
 
                 } else {
 
                     reportUsageCount++;
 
-                    ReportQuotaUsageCallback reportUsageCallback = new ReportQuotaUsageCallback(users[randomuser], shc);
-
                     long unitsUsed = (int) (users[randomuser].currentlyReserved * 0.9);
                     long unitsWanted = r.nextInt(100);
 
-                    mainClient.callProcedure(reportUsageCallback, "ReportQuotaUsage", randomuser, unitsUsed,
+                    ReportQuotaUsageCallback reportUsageCallback = new ReportQuotaUsageCallback(users[randomuser], shc,
+                            compactResponse, ledger, unitsUsed);
+
+                    engine.callProcedure(reportUsageCallback, REPORT_QUOTA_USAGE_WITH_OPTIONS, randomuser, unitsUsed,
                             unitsWanted, users[randomuser].sessionId,
-                            "ReportQuotaUsage_" + pid + "_" + reportUsageCount + "_" + System.currentTimeMillis());
+                            "ReportQuotaUsage_" + pid + "_" + reportUsageCount + "_" + System.currentTimeMillis(),
+                            inlineCleanup, procResponseMode);
 
                 }
             }
@@ -629,9 +1318,14 @@ public abstract class BaseChargingDemo {
         }
 
         msg("finished adding transactions to queue");
-        mainClient.drain();
+        engine.drain();
         msg("Queue drained");
 
+        if (sweeper != null) {
+            sweeper.stop();
+            sweeperThread.join();
+        }
+
         long elapsedTimeMs = System.currentTimeMillis() - startMsRun;
         msg("Processed " + tranCount + " transactions in " + elapsedTimeMs + " milliseconds");
 
@@ -643,11 +1337,28 @@ public abstract class BaseChargingDemo {
         msg("Add Credit calls = " + addCreditCount);
         msg("Report Usage calls = " + reportUsageCount);
         msg("Skipped because transaction was in flight = " + inFlightCount);
+        msg("Transaction cleanup = " + txnCleanupMode);
+        msg("Old transactions purged in background = "
+                + shc.getCounter(TransactionHistorySweeper.PURGED_TRANSACTIONS));
+        msg("Response mode = " + responseMode);
+        reportResponseStats(REPORT_QUOTA_USAGE, REPORT_QUOTA_USAGE_DECODE);
+        reportResponseStats(ADD_CREDIT, ADD_CREDIT_DECODE);
 
         reportRunLatencyStats(tpMs, tps);
+        reportRequestDistribution(engine, routingStats);
+
+        boolean reconciled = true;
+
+        if (ledger != null) {
+            msg("Reconciling balances...");
+            ledger.startVerifying();
+            final long verifyMs = PartitionBalanceScanner.scanAllPartitions(mainClient, shc,
+                    PartitionBalanceScanner.DEFAULT_PAGE_SIZE, ledger);
+            reconciled = ledger.report(verifyMs);
+        }
 
         // Declare victory if we got >= 90% of requested TPS...
-        if (tps / (tpMs * 1000) > .9) {
+        if (reconciled && tps / (tpMs * 1000) > .9) {
             return true;
 
         }
@@ -655,6 +1366,68 @@ public abstract class BaseChargingDemo {
         return false;
     }
 
+    /**
+     * Keep track of how big responses from a procedure are.
+     * 
+     * @param shc
+     * @param procName
+     * @param response
+     */
+    public static void reportResponseSize(SafeHistogramCache shc, String procName, ClientResponse response) {
+
+        int responseBytes = 0;
+
+        for (VoltTable t : response.getResults()) {
+            responseBytes += t.getSerializedSize();
+        }
+
+        shc.incCounter(procName + RESPONSES);
+        shc.incCounter(procName + RESPONSE_BYTES, responseBytes);
+    }
+
+    /**
+     * Log how big responses were and how long callbacks took to decode them.
+     * 
+     * @param procName
+     * @param decodeHistogramName
+     */
+    private static void reportResponseStats(String procName, String decodeHistogramName) {
+
+        final long responses = shc.getCounter(procName + RESPONSES);
+
+        if (responses > 0) {
+            msg(procName + ": " + responses + " responses, " + (shc.getCounter(procName + RESPONSE_BYTES) / responses)
+                    + " bytes per response, " + (int) shc.get(decodeHistogramName).getLatencyAverage()
+                    + "ns average decode time");
+        }
+    }
+
+    /**
+     * Get one partition key for each partition, so we can call procedures that do
+     * something to a whole partition.
+     * 
+     * @param mainClient
+     * @return partition keys
+     * @throws IOException
+     * @throws NoConnectionsException
+     * @throws ProcCallException
+     */
+    public static long[] getPartitionKeys(Client mainClient)
+            throws IOException, NoConnectionsException, ProcCallException {
+
+        ClientResponse cr = mainClient.callProcedure("@GetPartitionKeys", "INTEGER");
+        VoltTable keyTable = cr.getResults()[0];
+
+        long[] partitionKeys = new long[keyTable.getRowCount()];
+        int i = 0;
+
+        while (keyTable.advanceRow()) {
+            partitionKeys[i++] = keyTable.getLong("PARTITION_KEY");
+        }
+
+        return partitionKeys;
+    }
+
     /**
      * Turn latency stats into a grepable string
      *
@@ -681,6 +1454,44 @@ public abstract class BaseChargingDemo {
         msg(shc.toString());
     }
 
+    /**
+     * Show how many requests went to each host during the run, and how many went
+     * straight to the partition's leader. If the client isn't topology aware
+     * hosts we didn't list won't get any, and VoltDB has to forward calls for
+     * their partitions.
+     *
+     * @param engine
+     * @param routingStats a stats context created when the run started
+     */
+    private static void reportRequestDistribution(ProcedureEngine engine, EngineStatsContext routingStats) {
+
+        List<ClientStats> connectionStats = routingStats.fetch().getStatsByConnection();
+
+        // A host can have more than one connection...
+        TreeMap<String, Long> hostRequests = new TreeMap<>();
+        long totalRequests = 0;
+
+        for (ClientStats stats : connectionStats) {
+            final String host = stats.getHostname() + ":" + stats.getPort();
+            hostRequests.merge(host, stats.getInvocationsCompleted(), Long::sum);
+            totalRequests += stats.getInvocationsCompleted();
+        }
+
+        msg("Client engine = " + engine.getName() + ", topology = " + getClientTopologyIfSet());
+        engine.reportStats();
+
+        for (Map.Entry<String, Long> host : hostRequests.entrySet()) {
+            msg("Requests to " + host.getKey() + " = " + host.getValue() + " ("
+                    + (totalRequests == 0 ? 0 : (host.getValue() * 100) / totalRequests) + "%)");
+        }
+
+        msg("Calls sent to partition leader = " + routingStats.getAffinityCalls() + ", sent elsewhere = "
+                + routingStats.getOtherCalls());
+        msg("Connections lost = " + shc.getCounter(ClusterConnectionListener.CONNECTIONS_LOST) + ", made = "
+                + shc.getCounter(ClusterConnectionListener.CONNECTIONS_CREATED) + ", failed = "
+                + shc.getCounter(ClusterConnectionListener.CONNECTIONS_FAILED));
+    }
+
     /**
      * Get Linux process ID - used for pseudo unique ids
      * 
@@ -700,22 +1511,160 @@ public abstract class BaseChargingDemo {
         return System.currentTimeMillis() % 1000000;
     }
     
+    /**
+     * get KV_MODE env variable if set
+     * 
+     * @return KV_MODE_LOCK or KV_MODE_OPTIMISTIC
+     */
+    public static String getKvModeIfSet() {
+        return getOptionIfSet(KV_MODE, KV_MODE_LOCK, KV_MODE_OPTIMISTIC);
+    }
+
+    /**
+     * get TXN_CLEANUP env variable if set
+     * 
+     * @return TXN_CLEANUP_INLINE or TXN_CLEANUP_DEFERRED
+     */
+    public static String getTxnCleanupIfSet() {
+        return getOptionIfSet(TXN_CLEANUP, TXN_CLEANUP_INLINE, TXN_CLEANUP_DEFERRED);
+    }
+
+    /**
+     * get RESPONSE_MODE env variable if set
+     * 
+     * @return RESPONSE_MODE_FULL or RESPONSE_MODE_COMPACT
+     */
+    public static String getResponseModeIfSet() {
+        return getOptionIfSet(RESPONSE_MODE, RESPONSE_MODE_FULL, RESPONSE_MODE_COMPACT);
+    }
+
+    /**
+     * get RECONCILE env variable if set
+     * 
+     * @return RECONCILE_NO or RECONCILE_YES
+     */
+    public static String getReconcileIfSet() {
+        return getOptionIfSet(RECONCILE, RECONCILE_NO, RECONCILE_YES);
+    }
+
+    /**
+     * get BOOTSTRAP env variable if set
+     * 
+     * @return BOOTSTRAP_NO or BOOTSTRAP_YES
+     */
+    public static String getBootstrapIfSet() {
+        return getOptionIfSet(BOOTSTRAP, BOOTSTRAP_NO, BOOTSTRAP_YES);
+    }
+
+    /**
+     * get CLIENT_TOPOLOGY env variable if set
+     * 
+     * @return CLIENT_TOPOLOGY_AWARE or CLIENT_TOPOLOGY_STATIC
+     */
+    public static String getClientTopologyIfSet() {
+        return getOptionIfSet(CLIENT_TOPOLOGY, CLIENT_TOPOLOGY_AWARE, CLIENT_TOPOLOGY_STATIC);
+    }
+
+    /**
+     * get CLIENT_ENGINE env variable if set
+     * 
+     * @return LegacyClientEngine.NAME or Client2Engine.NAME
+     */
+    public static String getClientEngineIfSet() {
+        return getOptionIfSet(CLIENT_ENGINE, LegacyClientEngine.NAME, Client2Engine.NAME);
+    }
+
+    /**
+     * get CLIENT_LIMITER env variable if set
+     * 
+     * @return CLIENT_LIMITER_NONE, ConcurrencyLimiter.AIMD or
+     *         ConcurrencyLimiter.VEGAS
+     */
+    public static String getClientLimiterIfSet() {
+        return getOptionIfSet(CLIENT_LIMITER, CLIENT_LIMITER_NONE, ConcurrencyLimiter.AIMD, ConcurrencyLimiter.VEGAS);
+    }
+
+    /**
+     * get JSON_SIZE_DISTRIBUTION env variable if set
+     * 
+     * @return PayloadGenerator.DISTRIBUTION_FIXED, DISTRIBUTION_UNIFORM or
+     *         DISTRIBUTION_LONGTAIL
+     */
+    public static String getPayloadDistributionIfSet() {
+        return getOptionIfSet(PayloadGenerator.JSON_SIZE_DISTRIBUTION, PayloadGenerator.DISTRIBUTION_FIXED,
+                PayloadGenerator.DISTRIBUTION_UNIFORM, PayloadGenerator.DISTRIBUTION_LONGTAIL);
+    }
+
+    /**
+     * get KV_READ_MODE env variable if set
+     * 
+     * @return KV_READ_MODE_FULL or KV_READ_MODE_LEAN
+     */
+    public static String getKvReadModeIfSet() {
+        return getOptionIfSet(KV_READ_MODE, KV_READ_MODE_FULL, KV_READ_MODE_LEAN);
+    }
+
+    /**
+     * get an env variable that can have one of a fixed list of values
+     * 
+     * @param envName
+     * @param defaultValue used if not set or not recognized
+     * @param otherValues
+     * @return defaultValue or one of otherValues
+     */
+    public static String getOptionIfSet(String envName, String defaultValue, String... otherValues) {
+
+        String optionEnv = System.getenv(envName);
+
+        if (optionEnv != null && optionEnv.length() > 0) {
+            msg(envName + " is '" + optionEnv + "'");
+
+            for (String otherValue : otherValues) {
+                if (optionEnv.equalsIgnoreCase(otherValue)) {
+                    return otherValue;
+                }
+            }
+
+            if (!optionEnv.equalsIgnoreCase(defaultValue)) {
+                msg("Unknown " + envName + " '" + optionEnv + "', using " + defaultValue);
+            }
+        }
+
+        return defaultValue;
+    }
+
     /**
      * get EXTRA_MS env variable if set
      * @return extraMs
      */
     public static int getExtraMsIfSet() {
-        
-        int extraMs = 0;
+        return getNumberIfSet(EXTRA_MS, 0);
+    }
 
-        String extraMsEnv = System.getenv(EXTRA_MS);
-        
-        if (extraMsEnv != null && extraMsEnv.length() > 0) {
-            msg("EXTRA_MS is '" + extraMsEnv + "'" );
-            extraMs = Integer.parseInt(extraMsEnv);
+    /**
+     * get a numeric env variable if set
+     *
+     * @param envName
+     * @param defaultValue
+     * @return value of envName, or defaultValue
+     */
+    public static int getNumberIfSet(String envName, int defaultValue) {
+
+        int value = defaultValue;
+
+        String valueEnv = System.getenv(envName);
+
+        if (valueEnv != null && valueEnv.length() > 0) {
+            msg(envName + " is '" + valueEnv + "'");
+
+            try {
+                value = Integer.parseInt(valueEnv);
+            } catch (NumberFormatException e) {
+                msg("Unknown " + envName + " '" + valueEnv + "', using " + defaultValue);
+            }
         }
-        
-        return extraMs;
+
+        return value;
     }
 
 }
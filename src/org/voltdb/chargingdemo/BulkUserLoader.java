@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.voltdb.VoltType;
+import org.voltdb.chargingdemo.callbacks.UpsertUserBatchCallback;
+import org.voltdb.client.ClientImpl;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Loads a contiguous range of users using UpsertUserBatch. Users are grouped by
+ * VoltDB partition, so each call only touches one partition. Several of these
+ * can share a client, each working on its own range.
+ *
+ */
+public class BulkUserLoader implements Runnable {
+
+    public static final String UPSERT_USER_BATCH = "UpsertUserBatch";
+    public static final String LOADED_USERS_PARTITION = "LOADED_USERS_PARTITION_";
+
+    /**
+     * Users for one VoltDB partition that haven't been sent yet.
+     */
+    private static class UserBatch {
+
+        long[] userIds;
+        long[] balances;
+        int userCount = 0;
+
+        UserBatch(int batchSize) {
+            userIds = new long[batchSize];
+            balances = new long[batchSize];
+        }
+
+        void add(long userId, long balance) {
+            userIds[userCount] = userId;
+            balances[userCount] = balance;
+            userCount++;
+        }
+    }
+
+    ClientImpl client;
+    SafeHistogramCache shc;
+    ProgressCheckpoint checkpoint;
+    int worker;
+    long firstUserId;
+    long lastUserId;
+    int batchSize;
+    int tpMs;
+    String ourJson;
+    int initialCredit;
+    Date lastSeen;
+
+    /**
+     * @param client        a client that knows how the cluster is partitioned
+     * @param shc
+     * @param checkpoint    told about users once VoltDB has them
+     * @param worker        which of checkpoint's workers we are
+     * @param firstUserId   first user we load
+     * @param lastUserId    last user we load
+     * @param batchSize     how many users we send in one call
+     * @param tpMs          how many users per millisecond this loader does
+     * @param ourJson
+     * @param initialCredit
+     * @param lastSeen
+     */
+    public BulkUserLoader(ClientImpl client, SafeHistogramCache shc, ProgressCheckpoint checkpoint, int worker,
+            long firstUserId, long lastUserId, int batchSize, int tpMs, String ourJson, int initialCredit,
+            Date lastSeen) {
+        this.client = client;
+        this.shc = shc;
+        this.checkpoint = checkpoint;
+        this.worker = worker;
+        this.firstUserId = firstUserId;
+        this.lastUserId = lastUserId;
+        this.batchSize = batchSize;
+        this.tpMs = tpMs;
+        this.ourJson = ourJson;
+        this.initialCredit = initialCredit;
+        this.lastSeen = lastSeen;
+    }
+
+    @Override
+    public void run() {
+
+        HashMap<Long, UserBatch> batches = new HashMap<>();
+        Random r = new Random();
+
+        long currentMs = System.currentTimeMillis();
+        int tpThisMs = 0;
+
+        try {
+
+            for (long userId = firstUserId; userId <= lastUserId; userId++) {
+
+                if (tpThisMs++ > tpMs) {
+
+                    while (currentMs == System.currentTimeMillis()) {
+                        Thread.sleep(0, 50000);
+                    }
+
+                    currentMs = System.currentTimeMillis();
+                    tpThisMs = 0;
+                }
+
+                final long partitionId = client.getPartitionForParameter(VoltType.BIGINT.getValue(), userId);
+
+                UserBatch batch = batches.get(partitionId);
+
+                if (batch == null) {
+                    batch = new UserBatch(batchSize);
+                    batches.put(partitionId, batch);
+                }
+
+                batch.add(userId, r.nextInt(initialCredit));
+
+                if (batch.userCount == batchSize) {
+                    sendBatch(partitionId, batch);
+                    batches.put(partitionId, new UserBatch(batchSize));
+                }
+            }
+
+            // Send whatever is left over...
+            for (Long partitionId : batches.keySet()) {
+
+                UserBatch batch = batches.get(partitionId);
+
+                if (batch.userCount > 0) {
+                    sendBatch(partitionId, batch);
+                }
+            }
+
+        } catch (Exception e) {
+            BaseChargingDemo.msg("BulkUserLoader: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Send a batch of users for one partition to UpsertUserBatch.
+     *
+     * @param partitionId
+     * @param batch
+     * @throws Exception
+     */
+    private void sendBatch(long partitionId, UserBatch batch) throws Exception {
+
+        long[] userIds = batch.userIds;
+        long[] balances = batch.balances;
+
+        if (batch.userCount < userIds.length) {
+            userIds = Arrays.copyOf(userIds, batch.userCount);
+            balances = Arrays.copyOf(balances, batch.userCount);
+        }
+
+        UpsertUserBatchCallback theCallback = new UpsertUserBatchCallback(shc, partitionId, userIds, checkpoint,
+                worker);
+
+        client.callProcedure(theCallback, UPSERT_USER_BATCH, userIds[0], userIds, balances, ourJson, "Created",
+                lastSeen, "Create_");
+    }
+
+}
@@ -10,6 +10,7 @@ package org.voltdb.chargingdemo;
 
 import java.util.Arrays;
 
+import org.voltdb.chargingdemo.engine.ProcedureEngine;
 import org.voltdb.client.Client;
 
 public class ChargingDemoKVStore extends BaseChargingDemo {
@@ -49,6 +50,15 @@ public class ChargingDemoKVStore extends BaseChargingDemo {
         
         // Extra delay for testing really slow hardware
         int extraMs = getExtraMsIfSet();
+
+        // LOCK or OPTIMISTIC
+        String kvMode = getKvModeIfSet();
+
+        // FULL or LEAN
+        String kvReadMode = getKvReadModeIfSet();
+
+        // FIXED, UNIFORM or LONGTAIL
+        String payloadDistribution = getPayloadDistributionIfSet();
  
         try {
             // A VoltDB Client object maintains multiple connections to all the
@@ -56,10 +66,15 @@ public class ChargingDemoKVStore extends BaseChargingDemo {
             Client mainClient = connectVoltDB(hostlist);
 
             unlockAllRecords(mainClient);
+
+            // LEGACY or CLIENT2
+            ProcedureEngine engine = createEngine(hostlist, mainClient);
+
             boolean ok = runKVBenchmark(userCount, tpMs, durationSeconds, globalQueryFreqSeconds, jsonsize, mainClient,
-                    deltaProportion, extraMs);
+                    engine, deltaProportion, extraMs, kvMode, kvReadMode, payloadDistribution);
 
             msg("Closing connection...");
+            engine.close();
             mainClient.close();
 
             if (ok) {
@@ -11,6 +11,7 @@ package org.voltdb.chargingdemo;
 
 import java.util.Arrays;
 
+import org.voltdb.chargingdemo.engine.ProcedureEngine;
 import org.voltdb.client.Client;
 
 public class ChargingDemoTransactions extends BaseChargingDemo {
@@ -45,16 +46,38 @@ public class ChargingDemoTransactions extends BaseChargingDemo {
         // Extra delay for testing really slow hardware
         int extraMs = getExtraMsIfSet();
 
+        // INLINE or DEFERRED
+        String txnCleanupMode = getTxnCleanupIfSet();
+
+        // FULL or COMPACT
+        String responseMode = getResponseModeIfSet();
+
+        // NO or YES
+        String reconcileMode = getReconcileIfSet();
+
+        // NO or YES
+        String bootstrapMode = getBootstrapIfSet();
+
         try {
             // A VoltDB Client object maintains multiple connections to all the
             // servers in the cluster.
             Client mainClient = connectVoltDB(hostlist);
 
-            clearUnfinishedTransactions(mainClient);
+            // If we're reading reservations from the server we can carry on
+            // with them...
+            if (!BOOTSTRAP_YES.equals(bootstrapMode)) {
+                clearUnfinishedTransactions(mainClient);
+            }
+
+            // LEGACY or CLIENT2
+            ProcedureEngine engine = createEngine(hostlist, mainClient);
 
-            boolean ok = runTransactionBenchmark(userCount, tpMs, durationSeconds, globalQueryFreqSeconds, mainClient, extraMs);
+            boolean ok = runTransactionBenchmark(userCount, tpMs, durationSeconds, globalQueryFreqSeconds, mainClient,
+                    engine, extraMs, txnCleanupMode, responseMode, reconcileMode,
+                    bootstrapMode);
 
             msg("Closing connection...");
+            engine.close();
             mainClient.close();
 
             if (ok) {
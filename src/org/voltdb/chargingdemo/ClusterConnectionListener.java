@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import org.voltdb.chargingdemo.engine.BackpressureTracker;
+import org.voltdb.client.ClientStatusListenerExt;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Tells us when the client loses or makes a connection to a VoltDB host, so
+ * we can see reconnects happening during a run instead of just a dip in TPS.
+ * Also passes on backpressure notifications.
+ *
+ */
+public class ClusterConnectionListener extends ClientStatusListenerExt {
+
+    public static final String CONNECTIONS_LOST = "CONNECTIONS_LOST";
+    public static final String CONNECTIONS_CREATED = "CONNECTIONS_CREATED";
+    public static final String CONNECTIONS_FAILED = "CONNECTIONS_FAILED";
+
+    SafeHistogramCache shc;
+    BackpressureTracker backpressure;
+
+    /**
+     * @param shc
+     * @param backpressure
+     */
+    public ClusterConnectionListener(SafeHistogramCache shc, BackpressureTracker backpressure) {
+        this.shc = shc;
+        this.backpressure = backpressure;
+    }
+
+    @Override
+    public void connectionLost(String hostname, int port, int connectionsLeft, DisconnectCause cause) {
+        shc.incCounter(CONNECTIONS_LOST);
+        BaseChargingDemo.msg("Lost connection to " + hostname + ":" + port + " (" + cause + "), " + connectionsLeft
+                + " connections left");
+    }
+
+    @Override
+    public void connectionCreated(String hostname, int port, AutoConnectionStatus status) {
+
+        if (status == AutoConnectionStatus.SUCCESS) {
+            shc.incCounter(CONNECTIONS_CREATED);
+            BaseChargingDemo.msg("Connected to " + hostname + ":" + port);
+        } else {
+            shc.incCounter(CONNECTIONS_FAILED);
+            BaseChargingDemo.msg("Unable to connect to " + hostname + ":" + port + " (" + status + ")");
+        }
+    }
+
+    @Override
+    public void backpressure(boolean status) {
+        backpressure.setBackpressure(status);
+    }
+
+}
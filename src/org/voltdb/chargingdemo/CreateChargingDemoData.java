@@ -13,6 +13,7 @@ import java.util.Arrays;
 import java.util.Random;
 
 import org.voltdb.client.Client;
+import org.voltdb.client.ClientImpl;
 
 import com.google.gson.Gson;
 
@@ -28,8 +29,8 @@ public class CreateChargingDemoData extends BaseChargingDemo {
 
         msg("Parameters:" + Arrays.toString(args));
 
-        if (args.length != 4) {
-            msg("Usage: hostnames recordcount tpms  maxinitialcredit ");
+        if (args.length != 4 && args.length != 6) {
+            msg("Usage: hostnames recordcount tpms  maxinitialcredit [threads batchsize]");
             System.exit(1);
         }
 
@@ -50,14 +51,32 @@ public class CreateChargingDemoData extends BaseChargingDemo {
         int initialCredit = Integer.parseInt(args[3]);
 
         try {
-            // A VoltDB Client object maintains multiple connections to all the
-            // servers in the cluster.
-            Client mainClient = connectVoltDB(hostlist);
 
-            upsertAllUsers(userCount, tpMs, ourJson, initialCredit, mainClient);
+            if (args.length == 6) {
 
-            msg("Closing connection...");
-            mainClient.close();
+                // Bulk load using several threads, one partition per call...
+                int threadCount = Integer.parseInt(args[4]);
+                int batchSize = Integer.parseInt(args[5]);
+
+                ClientImpl partitioningClient = getPartitioningClient(hostlist);
+
+                bulkUpsertAllUsers(userCount, tpMs, ourJson, initialCredit, partitioningClient, threadCount,
+                        batchSize);
+
+                msg("Closing connection...");
+                partitioningClient.close();
+
+            } else {
+
+                // A VoltDB Client object maintains multiple connections to all the
+                // servers in the cluster.
+                Client mainClient = connectVoltDB(hostlist);
+
+                upsertAllUsers(userCount, tpMs, ourJson, initialCredit, mainClient);
+
+                msg("Closing connection...");
+                mainClient.close();
+            }
 
         } catch (Exception e) {
             msg(e.getMessage());
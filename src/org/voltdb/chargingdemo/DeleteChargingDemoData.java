@@ -23,8 +23,8 @@ public class DeleteChargingDemoData extends BaseChargingDemo {
 
         msg("Parameters:" + Arrays.toString(args));
 
-        if (args.length != 2) {
-            msg("Usage: hostnames tpms");
+        if (args.length != 2 && args.length != 3) {
+            msg("Usage: hostnames tpms [chunksize]");
             System.exit(1);
         }
 
@@ -49,6 +49,9 @@ public class DeleteChargingDemoData extends BaseChargingDemo {
 
                 if (cr.getResults()[0].wasNull()) {
                     msg("no users found");
+                } else if (args.length == 3) {
+                    // Delete a chunk of users at a time from every partition at once...
+                    deleteAllUsersByRange(minId, maxId, Integer.parseInt(args[2]), mainClient);
                 } else {
                     deleteAllUsers(minId, maxId, tpMs, mainClient);
                 }
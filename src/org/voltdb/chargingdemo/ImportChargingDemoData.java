@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+
+import java.util.Arrays;
+
+import org.voltdb.client.Client;
+
+public class ImportChargingDemoData extends BaseChargingDemo {
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) {
+
+        msg("Parameters:" + Arrays.toString(args));
+
+        if (args.length != 4) {
+            msg("Usage: hostnames csvfile threads maxinflight");
+            msg("csvfile lines are userid,balance,loyaltycardnumber,payload");
+            msg("A maxinflight of 0 means we only parse the file");
+            System.exit(1);
+        }
+
+        // Comma delimited list of hosts...
+        String hostlist = args[0];
+
+        // File of users
+        String csvFile = args[1];
+
+        // How many threads parse the file
+        int threadCount = Integer.parseInt(args[2]);
+
+        // Most requests we have waiting for VoltDB
+        int maxInFlight = Integer.parseInt(args[3]);
+
+        try {
+
+            Client mainClient = null;
+
+            if (maxInFlight > 0) {
+                // A VoltDB Client object maintains multiple connections to all the
+                // servers in the cluster.
+                mainClient = connectVoltDB(hostlist);
+            }
+
+            SubscriberCsvImporter importer = new SubscriberCsvImporter(mainClient, shc, csvFile, threadCount,
+                    maxInFlight);
+            importer.importFile();
+
+            if (mainClient != null) {
+                msg("Closing connection...");
+                mainClient.close();
+            }
+
+        } catch (Exception e) {
+            msg(e.getMessage());
+        }
+
+    }
+
+}
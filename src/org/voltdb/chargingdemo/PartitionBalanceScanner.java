@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import java.io.IOException;
+
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.NoConnectionsException;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Reads every user's balance and reservations from one partition a page at a
+ * time using GetBalancePage, and hands each page to a PageHandler. scanAllPartitions runs
+ * one of these for each partition at the same time.
+ *
+ */
+public class PartitionBalanceScanner implements Runnable {
+
+    public static final String GET_BALANCE_PAGE = "GetBalancePage";
+    public static final String SCANNED_BALANCES = "SCANNED_BALANCES";
+    public static final int DEFAULT_PAGE_SIZE = 5000;
+
+    /**
+     * Something that wants to see balances. Pages from different partitions are
+     * handled at the same time, but each user only appears once.
+     */
+    public interface PageHandler {
+
+        /**
+         * @param page output of GetBalancePage
+         */
+        void handlePage(VoltTable[] page);
+    }
+
+    Client client;
+    SafeHistogramCache shc;
+    long partitionKey;
+    int pageSize;
+    PageHandler handler;
+
+    /**
+     * @param client
+     * @param shc
+     * @param partitionKey a value from '@GetPartitionKeys INTEGER'
+     * @param pageSize     most users we ask for in one call
+     * @param handler
+     */
+    public PartitionBalanceScanner(Client client, SafeHistogramCache shc, long partitionKey, int pageSize,
+            PageHandler handler) {
+        this.client = client;
+        this.shc = shc;
+        this.partitionKey = partitionKey;
+        this.pageSize = pageSize;
+        this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+
+        // Long.MIN_VALUE means NULL to VoltDB...
+        long nextUserId = Long.MIN_VALUE + 1;
+        int rowsThisPage = pageSize;
+
+        try {
+
+            while (rowsThisPage == pageSize) {
+
+                final long startMs = System.currentTimeMillis();
+                ClientResponse cr = client.callProcedure(GET_BALANCE_PAGE, partitionKey, nextUserId, pageSize);
+                shc.reportLatency(GET_BALANCE_PAGE, startMs, GET_BALANCE_PAGE, BaseChargingDemo.HISTOGRAM_SIZE_MS);
+
+                VoltTable balances = cr.getResults()[0];
+                rowsThisPage = balances.getRowCount();
+
+                if (rowsThisPage > 0) {
+                    balances.advanceToRow(rowsThisPage - 1);
+                    nextUserId = balances.getLong("userid") + 1;
+                    balances.resetRowPosition();
+
+                    handler.handlePage(cr.getResults());
+                    shc.incCounter(SCANNED_BALANCES, rowsThisPage);
+                }
+            }
+
+        } catch (Exception e) {
+            BaseChargingDemo.msg("PartitionBalanceScanner: partition key " + partitionKey + ": " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Read every balance in the database, one thread per partition.
+     *
+     * @param client
+     * @param shc
+     * @param pageSize
+     * @param handler
+     * @return how long it took in milliseconds
+     * @throws InterruptedException
+     * @throws IOException
+     * @throws NoConnectionsException
+     * @throws ProcCallException
+     */
+    public static long scanAllPartitions(Client client, SafeHistogramCache shc, int pageSize, PageHandler handler)
+            throws InterruptedException, IOException, NoConnectionsException, ProcCallException {
+
+        final long startMs = System.currentTimeMillis();
+        final long[] partitionKeys = BaseChargingDemo.getPartitionKeys(client);
+
+        Thread[] scannerThreads = new Thread[partitionKeys.length];
+
+        for (int i = 0; i < partitionKeys.length; i++) {
+            PartitionBalanceScanner scanner = new PartitionBalanceScanner(client, shc, partitionKeys[i], pageSize,
+                    handler);
+            scannerThreads[i] = new Thread(scanner, "PartitionBalanceScanner_" + i);
+            scannerThreads[i].start();
+        }
+
+        for (Thread scannerThread : scannerThreads) {
+            scannerThread.join();
+        }
+
+        return Math.max(1, System.currentTimeMillis() - startMs);
+    }
+
+}
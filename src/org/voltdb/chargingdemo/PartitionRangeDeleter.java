@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Deletes a range of users from one partition by calling DeleteUserRange over
+ * and over until it says it has finished. One of these runs for each partition.
+ *
+ */
+public class PartitionRangeDeleter implements Runnable {
+
+    public static final String DELETE_USER_RANGE = "DeleteUserRange";
+    public static final String RANGE_DELETED_USERS = "RANGE_DELETED_USERS";
+    public static final String RANGE_DELETED_ROWS = "RANGE_DELETED_ROWS";
+    public static final String RANGE_DELETED_USERS_PARTITION = "RANGE_DELETED_USERS_PARTITION_";
+
+    Client client;
+    SafeHistogramCache shc;
+    long partitionKey;
+    long minId;
+    long maxId;
+    int chunkSize;
+
+    /**
+     * @param client
+     * @param shc
+     * @param partitionKey a value from '@GetPartitionKeys INTEGER'
+     * @param minId
+     * @param maxId
+     * @param chunkSize    most users deleted per call
+     */
+    public PartitionRangeDeleter(Client client, SafeHistogramCache shc, long partitionKey, long minId, long maxId,
+            int chunkSize) {
+        this.client = client;
+        this.shc = shc;
+        this.partitionKey = partitionKey;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void run() {
+
+        long nextId = minId;
+        boolean finished = false;
+
+        try {
+
+            while (!finished) {
+
+                final long startMs = System.currentTimeMillis();
+                ClientResponse cr = client.callProcedure(DELETE_USER_RANGE, partitionKey, nextId, maxId, chunkSize);
+                shc.reportLatency(DELETE_USER_RANGE, startMs, DELETE_USER_RANGE, BaseChargingDemo.HISTOGRAM_SIZE_MS);
+
+                VoltTable progress = cr.getResults()[0];
+                progress.advanceRow();
+
+                final int deletedUsers = (int) progress.getLong("deleted_users");
+                shc.incCounter(RANGE_DELETED_USERS, deletedUsers);
+                shc.incCounter(RANGE_DELETED_ROWS, (int) progress.getLong("deleted_rows"));
+                shc.incCounter(RANGE_DELETED_USERS_PARTITION + partitionKey, deletedUsers);
+
+                nextId = progress.getLong("next_userid");
+                finished = progress.getLong("finished") == 1;
+            }
+
+        } catch (Exception e) {
+            BaseChargingDemo.msg("PartitionRangeDeleter: partition key " + partitionKey + ": " + e.getMessage());
+        }
+
+    }
+
+}
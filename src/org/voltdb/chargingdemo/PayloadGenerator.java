@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import java.util.Random;
+
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+import com.google.gson.Gson;
+
+/**
+ * Hands out JSON payloads for the KV benchmark. Payloads are generated up front
+ * and then handed out round robin, so getting one doesn't create any objects.
+ * Payload sizes follow one of several distributions around 'jsonsize'.
+ *
+ * Not thread safe - each thread should have its own.
+ *
+ */
+public class PayloadGenerator {
+
+    public static final String JSON_SIZE_DISTRIBUTION = "JSON_SIZE_DISTRIBUTION";
+
+    /**
+     * Every payload is 'jsonsize'
+     */
+    public static final String DISTRIBUTION_FIXED = "FIXED";
+
+    /**
+     * Payloads are between 1 and 2 * 'jsonsize', but never more than
+     * MAX_PAYLOAD_SIZE
+     */
+    public static final String DISTRIBUTION_UNIFORM = "UNIFORM";
+
+    /**
+     * Most payloads are smaller than 'jsonsize' but a few are much bigger. Average
+     * is roughly 'jsonsize'. Never more than MAX_PAYLOAD_SIZE.
+     */
+    public static final String DISTRIBUTION_LONGTAIL = "LONGTAIL";
+
+    public static final String GENERATED_PAYLOADS = "GENERATED_PAYLOADS";
+    public static final String GENERATED_PAYLOAD_BYTES = "GENERATED_PAYLOAD_BYTES";
+    public static final String PAYLOAD_SIZE = "PAYLOAD_SIZE";
+
+    /**
+     * How many payloads we make. Must be a power of 2.
+     */
+    public static final int DEFAULT_POOL_SIZE = 1024;
+
+    /**
+     * user_json_object is a varchar(8000), so leave room for the rest of the
+     * JSON...
+     */
+    public static final int MAX_PAYLOAD_SIZE = 7800;
+
+    /**
+     * Shape of our long tail. Lower means a longer tail.
+     */
+    private static final double PARETO_ALPHA = 1.5;
+
+    String[] pool;
+    int[] poolSizes;
+    int mask;
+    int nextPayload = 0;
+
+    long generatedCount = 0;
+    long generatedBytes = 0;
+
+    /**
+     * @param jsonsize     size of payload, or average size for UNIFORM and
+     *                     LONGTAIL
+     * @param distribution DISTRIBUTION_FIXED, DISTRIBUTION_UNIFORM or
+     *                     DISTRIBUTION_LONGTAIL
+     * @param poolSize     how many different payloads we make, a power of 2
+     * @param shc
+     */
+    public PayloadGenerator(int jsonsize, String distribution, int poolSize, SafeHistogramCache shc) {
+
+        if (Integer.bitCount(poolSize) != 1) {
+            throw new IllegalArgumentException("poolSize of " + poolSize + " is not a power of 2");
+        }
+
+        Random r = new Random();
+        Gson gson = new Gson();
+
+        pool = new String[poolSize];
+        poolSizes = new int[poolSize];
+        mask = poolSize - 1;
+
+        for (int i = 0; i < poolSize; i++) {
+
+            final int payloadSize = getPayloadSize(jsonsize, distribution, r);
+
+            pool[i] = BaseChargingDemo.getExtraUserDataAsJsonString(payloadSize, gson, r);
+            poolSizes[i] = pool[i].length();
+
+            shc.reportSize(PAYLOAD_SIZE, poolSizes[i], distribution, MAX_PAYLOAD_SIZE + 200);
+        }
+
+        BaseChargingDemo.msg("Generated " + poolSize + " " + distribution + " payloads averaging "
+                + (getPoolBytes() / poolSize) + " bytes");
+    }
+
+    /**
+     * @return a JSON payload. Doesn't create any objects.
+     */
+    public String next() {
+
+        final int ourPayload = nextPayload++ & mask;
+
+        generatedCount++;
+        generatedBytes += poolSizes[ourPayload];
+
+        return pool[ourPayload];
+    }
+
+    /**
+     * @return how many payloads next() has handed out
+     */
+    public long getGeneratedCount() {
+        return generatedCount;
+    }
+
+    /**
+     * @return how many bytes next() has handed out
+     */
+    public long getGeneratedBytes() {
+        return generatedBytes;
+    }
+
+    /**
+     * Copy our counts into shc so they show up with everything else.
+     *
+     * @param shc
+     */
+    public void reportStats(SafeHistogramCache shc) {
+        shc.setCounter(GENERATED_PAYLOADS, generatedCount);
+        shc.setCounter(GENERATED_PAYLOAD_BYTES, generatedBytes);
+    }
+
+    private long getPoolBytes() {
+
+        long poolBytes = 0;
+
+        for (int poolSize : poolSizes) {
+            poolBytes += poolSize;
+        }
+
+        return poolBytes;
+    }
+
+    /**
+     * Pick a payload size.
+     *
+     * @param jsonsize
+     * @param distribution
+     * @param r
+     * @return size of the hex payload we want
+     */
+    private static int getPayloadSize(int jsonsize, String distribution, Random r) {
+
+        if (DISTRIBUTION_UNIFORM.equals(distribution)) {
+            return Math.min(1 + r.nextInt(Math.max(1, jsonsize * 2)), MAX_PAYLOAD_SIZE);
+        }
+
+        if (DISTRIBUTION_LONGTAIL.equals(distribution)) {
+
+            // Pareto distribution with a mean of jsonsize...
+            final double minSize = jsonsize * (PARETO_ALPHA - 1) / PARETO_ALPHA;
+            final double size = minSize / Math.pow(1 - r.nextDouble(), 1 / PARETO_ALPHA);
+
+            return (int) Math.max(1, Math.min(size, MAX_PAYLOAD_SIZE));
+        }
+
+        return jsonsize;
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of how far a long running job such as CreateChargingDemoData has
+ * got, so that if it dies it can carry on where it left off. Work is split
+ * among one or more workers, each of which works its way up through its own
+ * range of user ids. For each worker we record the highest id for which it and
+ * every id before it have been acknowledged by VoltDB.
+ *
+ * This is only safe for jobs where doing the same id twice is harmless, such as
+ * UpsertUser, which spots duplicate txnIds, and DelUser.
+ *
+ */
+public class ProgressCheckpoint {
+
+    /**
+     * How often we write the checkpoint file
+     */
+    public static final long DEFAULT_SAVE_INTERVAL_MS = 5000;
+
+    private static final String JOB = "job";
+    private static final String WORKERS = "workers";
+    private static final String WORKER = "worker.";
+
+    /**
+     * Acknowledgements for one worker. Ids can be acknowledged in any order.
+     */
+    private static class ContiguousAckTracker {
+
+        long highestContiguousId;
+
+        /**
+         * Ranges acknowledged beyond highestContiguousId, first id to last id
+         */
+        TreeMap<Long, Long> pendingRanges = new TreeMap<>();
+
+        ContiguousAckTracker(long highestContiguousId) {
+            this.highestContiguousId = highestContiguousId;
+        }
+
+        synchronized void acknowledge(long firstId, long lastId) {
+
+            if (lastId <= highestContiguousId) {
+                return;
+            }
+
+            if (firstId > highestContiguousId + 1) {
+                Long existingLastId = pendingRanges.get(firstId);
+                pendingRanges.put(firstId, existingLastId == null ? lastId : Math.max(existingLastId, lastId));
+                return;
+            }
+
+            highestContiguousId = lastId;
+
+            // See if this fills a gap...
+            Map.Entry<Long, Long> nextRange;
+
+            while ((nextRange = pendingRanges.firstEntry()) != null
+                    && nextRange.getKey() <= highestContiguousId + 1) {
+                highestContiguousId = Math.max(highestContiguousId, nextRange.getValue());
+                pendingRanges.pollFirstEntry();
+            }
+        }
+
+        synchronized long getHighestContiguousId() {
+            return highestContiguousId;
+        }
+    }
+
+    File checkpointFile;
+    String jobDescription;
+    ContiguousAckTracker[] trackers;
+    long[] resumeIds;
+    long saveIntervalMs = DEFAULT_SAVE_INTERVAL_MS;
+    long lastSaveMs = System.currentTimeMillis();
+
+    /**
+     * Create a checkpoint, picking up where we left off if 'checkpointFileName'
+     * exists and was written by the same job.
+     *
+     * @param checkpointFileName
+     * @param jobDescription     describes the job, e.g.
+     *                           "CreateChargingDemoData 20000000 users". If it
+     *                           doesn't match what's in the file we start again.
+     * @param firstIds           first id for each worker
+     */
+    public ProgressCheckpoint(String checkpointFileName, String jobDescription, long[] firstIds) {
+
+        this.checkpointFile = new File(checkpointFileName);
+        this.jobDescription = jobDescription;
+
+        trackers = new ContiguousAckTracker[firstIds.length];
+        resumeIds = new long[firstIds.length];
+
+        Properties savedProgress = load();
+
+        for (int i = 0; i < firstIds.length; i++) {
+
+            resumeIds[i] = firstIds[i];
+
+            if (savedProgress != null) {
+                long savedId = Long.parseLong(savedProgress.getProperty(WORKER + i, "" + Long.MIN_VALUE));
+
+                if (savedId >= firstIds[i]) {
+                    resumeIds[i] = savedId + 1;
+                }
+            }
+
+            trackers[i] = new ContiguousAckTracker(resumeIds[i] - 1);
+        }
+
+    }
+
+    /**
+     * @param worker
+     * @return first id 'worker' needs to do
+     */
+    public long getResumeId(int worker) {
+        return resumeIds[worker];
+    }
+
+    /**
+     * Note that VoltDB has confirmed that ids firstId to lastId are done.
+     *
+     * @param worker
+     * @param firstId
+     * @param lastId
+     */
+    public void acknowledge(int worker, long firstId, long lastId) {
+        trackers[worker].acknowledge(firstId, lastId);
+    }
+
+    /**
+     * Write the checkpoint file if we haven't done so for a while.
+     */
+    public void saveIfDue() {
+
+        if (lastSaveMs + saveIntervalMs < System.currentTimeMillis()) {
+            save();
+        }
+    }
+
+    /**
+     * Write the checkpoint file. We write a temporary file and then rename it so
+     * we never leave a half written file behind.
+     */
+    public synchronized void save() {
+
+        Properties progress = new Properties();
+        progress.setProperty(JOB, jobDescription);
+        progress.setProperty(WORKERS, "" + trackers.length);
+
+        for (int i = 0; i < trackers.length; i++) {
+            progress.setProperty(WORKER + i, "" + trackers[i].getHighestContiguousId());
+        }
+
+        File tempFile = new File(checkpointFile.getPath() + ".tmp");
+
+        try {
+
+            // The file has to be closed before we rename it...
+            try (OutputStream os = new FileOutputStream(tempFile)) {
+                progress.store(os, jobDescription);
+            }
+
+            Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            BaseChargingDemo.msg("Unable to write checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+
+        lastSaveMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Call when the job has finished. If everything has been acknowledged we
+     * remove the checkpoint file so the next run starts from the beginning.
+     * Otherwise we save it so the next run can redo what's missing.
+     *
+     * @param lastIds last id for each worker
+     * @return true if everything was acknowledged
+     */
+    public synchronized boolean finish(long[] lastIds) {
+
+        for (int i = 0; i < trackers.length; i++) {
+
+            if (trackers[i].getHighestContiguousId() < lastIds[i]) {
+                save();
+                BaseChargingDemo.msg("Worker " + i + " only got to " + trackers[i].getHighestContiguousId()
+                        + " of " + lastIds[i] + ", run again to resume from checkpoint " + checkpointFile);
+                return false;
+            }
+        }
+
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            BaseChargingDemo.msg("Unable to delete checkpoint " + checkpointFile);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return saved progress, or null if there isn't any for this job
+     */
+    private Properties load() {
+
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+
+        Properties savedProgress = new Properties();
+
+        try (InputStream is = new FileInputStream(checkpointFile)) {
+            savedProgress.load(is);
+        } catch (IOException e) {
+            BaseChargingDemo.msg("Unable to read checkpoint " + checkpointFile + ": " + e.getMessage());
+            return null;
+        }
+
+        if (!jobDescription.equals(savedProgress.getProperty(JOB))
+                || !("" + trackers.length).equals(savedProgress.getProperty(WORKERS))) {
+            BaseChargingDemo.msg("Checkpoint " + checkpointFile + " is for '" + savedProgress.getProperty(JOB)
+                    + "', ignoring it");
+            return null;
+        }
+
+        BaseChargingDemo.msg("Resuming from checkpoint " + checkpointFile);
+        return savedProgress;
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.VoltTable;
+
+/**
+ * Keeps track of what we think each user's balance should be, so that after a
+ * run we can check it against what VoltDB says. We start with a snapshot of
+ * every balance, and then add credits and take away spending as callbacks tell
+ * us they've happened. Users for whom a call failed are marked as 'uncertain',
+ * as we don't know if the call took effect.
+ *
+ * Only one transaction is ever in flight for a user, so we don't need to
+ * synchronize changes to a user's expected balance.
+ *
+ */
+public class ShadowLedger implements PartitionBalanceScanner.PageHandler {
+
+    /**
+     * What each user's balance should be.
+     */
+    long[] expectedBalances;
+
+    /**
+     * Users we can't check because a call to change their balance failed.
+     */
+    BitSet uncertainUsers = new BitSet();
+
+    /**
+     * Users we saw in the initial snapshot but haven't seen since.
+     */
+    BitSet unseenUsers = new BitSet();
+
+    /**
+     * true once we've taken our snapshot and are checking balances.
+     */
+    volatile boolean verifying = false;
+
+    AtomicLong totalCredits = new AtomicLong();
+    AtomicLong totalSpent = new AtomicLong();
+
+    AtomicLong checkedUsers = new AtomicLong();
+    AtomicLong mismatchedUsers = new AtomicLong();
+    AtomicLong missingUsers = new AtomicLong();
+    AtomicLong expectedTotal = new AtomicLong();
+    AtomicLong actualTotal = new AtomicLong();
+
+    /**
+     * Most mismatches we'll print...
+     */
+    private static final int MAX_MISMATCH_MESSAGES = 10;
+
+    /**
+     * @param userCount users 0 to userCount - 1 are tracked
+     */
+    public ShadowLedger(int userCount) {
+        expectedBalances = new long[userCount];
+    }
+
+    /**
+     * Note that 'amount' was added to a user's balance.
+     *
+     * @param userId
+     * @param amount
+     */
+    public void credit(int userId, long amount) {
+        expectedBalances[userId] += amount;
+        totalCredits.addAndGet(amount);
+    }
+
+    /**
+     * Note that 'amount' was spent by a user.
+     *
+     * @param userId
+     * @param amount
+     */
+    public void spend(int userId, long amount) {
+        expectedBalances[userId] -= amount;
+        totalSpent.addAndGet(amount);
+    }
+
+    /**
+     * Note that we don't know what happened to a call for this user.
+     *
+     * @param userId
+     */
+    public void uncertain(int userId) {
+        synchronized (uncertainUsers) {
+            uncertainUsers.set(userId);
+        }
+    }
+
+    /**
+     * Switch from taking a snapshot to checking balances.
+     */
+    public void startVerifying() {
+        verifying = true;
+    }
+
+    @Override
+    public void handlePage(VoltTable[] page) {
+
+        VoltTable balances = page[0];
+
+        while (balances.advanceRow()) {
+
+            final long userId = balances.getLong("userid");
+            final long balance = balances.getLong("balance");
+
+            if (userId < 0 || userId >= expectedBalances.length) {
+                continue;
+            }
+
+            final int ourUserId = (int) userId;
+
+            if (!verifying) {
+
+                expectedBalances[ourUserId] = balance;
+
+                synchronized (unseenUsers) {
+                    unseenUsers.set(ourUserId);
+                }
+
+            } else {
+
+                synchronized (unseenUsers) {
+                    unseenUsers.clear(ourUserId);
+                }
+
+                synchronized (uncertainUsers) {
+                    if (uncertainUsers.get(ourUserId)) {
+                        continue;
+                    }
+                }
+
+                checkedUsers.incrementAndGet();
+                expectedTotal.addAndGet(expectedBalances[ourUserId]);
+                actualTotal.addAndGet(balance);
+
+                if (balance != expectedBalances[ourUserId]) {
+                    if (mismatchedUsers.incrementAndGet() <= MAX_MISMATCH_MESSAGES) {
+                        BaseChargingDemo.msg("User " + userId + " has balance of " + balance + ", expected "
+                                + expectedBalances[ourUserId]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Call after verifying to see how many users from the snapshot have gone.
+     */
+    private long countMissingUsers() {
+
+        BitSet stillMissing;
+
+        synchronized (unseenUsers) {
+            stillMissing = (BitSet) unseenUsers.clone();
+        }
+
+        synchronized (uncertainUsers) {
+            stillMissing.andNot(uncertainUsers);
+        }
+
+        return stillMissing.cardinality();
+    }
+
+    /**
+     * Log what we found.
+     *
+     * @param elapsedMs how long verification took
+     * @return true if everything matched
+     */
+    public boolean report(long elapsedMs) {
+
+        missingUsers.set(countMissingUsers());
+
+        BaseChargingDemo.msg("Reconciliation: " + checkedUsers.get() + " users checked in " + elapsedMs + "ms, "
+                + ((checkedUsers.get() * 1000) / Math.max(1, elapsedMs)) + " users per second");
+        BaseChargingDemo.msg("Reconciliation: credits added = " + totalCredits.get() + ", units spent = "
+                + totalSpent.get());
+        BaseChargingDemo.msg("Reconciliation: expected total balance = " + expectedTotal.get()
+                + ", actual total balance = " + actualTotal.get());
+        BaseChargingDemo.msg("Reconciliation: " + mismatchedUsers.get() + " mismatched users, " + missingUsers.get()
+                + " missing users, " + uncertainUsers.cardinality() + " users skipped because a call failed");
+
+        return mismatchedUsers.get() == 0 && missingUsers.get() == 0;
+    }
+
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.chargingdemo.callbacks.ImportUserCallback;
+import org.voltdb.client.Client;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Loads subscribers from a CSV file with lines that look like:
+ * <p>
+ * userid,balance,loyaltycardnumber,payload
+ * <p>
+ * The file is memory mapped and split into chunks that start at the beginning
+ * of a line, and several threads parse chunks at the same time. Numbers are
+ * parsed directly from the mapped bytes, and the payload is decoded from UTF-8
+ * into a reused buffer and escaped as it's copied into the JSON. The only
+ * object we create per line is the JSON string we send to UpsertUser, which has
+ * to be a new one as the call is queued until VoltDB answers. The payload may
+ * be quoted the way CSV files usually quote text. Lines with numbers that don't
+ * fit in a long are skipped. The number of requests in flight is limited by a
+ * Semaphore.
+ *
+ */
+public class SubscriberCsvImporter {
+
+    public static final String IMPORTED_USERS = "IMPORTED_USERS";
+    public static final String IMPORT_ERRORS = "IMPORT_ERRORS";
+    public static final String UPSERT_USER = "UpsertUser";
+
+    /**
+     * Biggest chunk we map in one go. MappedByteBuffer can't go past 2GB.
+     */
+    public static final long MAX_CHUNK_BYTES = 256 * 1024 * 1024;
+
+    /**
+     * So each thread has several chunks to work through...
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * How much we read at a time when looking for the end of a line
+     */
+    private static final int NEWLINE_SEARCH_BYTES = 64 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final String JSON_START = "{\"mysteriousHexPayload\":\"";
+    private static final String JSON_MIDDLE = "\",\"loyaltySchemeName\":\"ImportedCard\",\"loyaltySchemeNumber\":";
+    private static final String JSON_END = "}";
+
+    /**
+     * A line aligned part of the file.
+     */
+    private static class Chunk {
+
+        long start;
+        long length;
+
+        Chunk(long start, long length) {
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Parses chunks until there are none left.
+     */
+    private class ChunkParser implements Runnable {
+
+        StringBuilder json = new StringBuilder();
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        /**
+         * The current line's payload, decoded
+         */
+        CharBuffer payloadChars = CharBuffer.allocate(1024);
+
+        /**
+         * userid, balance, loyalty card for the current line
+         */
+        long[] numbers = new long[3];
+
+        long linesParsed = 0;
+        long bytesParsed = 0;
+        long badLines = 0;
+        long parseNanos = 0;
+
+        @Override
+        public void run() {
+
+            Chunk chunk;
+
+            try {
+                while ((chunk = chunks.poll()) != null) {
+                    parseChunk(chunk);
+                }
+            } catch (Exception e) {
+                BaseChargingDemo.msg("SubscriberCsvImporter: " + e.getMessage());
+            }
+
+        }
+
+        private void parseChunk(Chunk chunk) throws IOException, InterruptedException {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.length);
+
+            long startNanos = System.nanoTime();
+            int pos = 0;
+            final int limit = buffer.limit();
+
+            while (pos < limit) {
+
+                final int lineStart = pos;
+                boolean lineEnded = false;
+                int field = 0;
+                boolean negative = false;
+                boolean sawDigit = false;
+                long value = 0;
+
+                // userid, balance and loyalty card are numbers...
+                while (pos < limit && field < numbers.length) {
+
+                    final byte b = buffer.get(pos++);
+
+                    if (b >= '0' && b <= '9') {
+
+                        // Too big for a long...
+                        if (value > (Long.MAX_VALUE - (b - '0')) / 10) {
+                            field = -1;
+                            break;
+                        }
+
+                        value = (value * 10) + (b - '0');
+                        sawDigit = true;
+                    } else if (b == '-' && !sawDigit && !negative) {
+                        negative = true;
+                    } else if (b == ',') {
+                        numbers[field++] = negative ? -value : value;
+                        negative = false;
+                        sawDigit = false;
+                        value = 0;
+                    } else if (b == '\n') {
+                        lineEnded = true;
+                        break;
+                    } else if (b != ' ' && b != '\r' && b != '"') {
+                        // Header or garbage...
+                        field = -1;
+                        break;
+                    }
+                }
+
+                // ...and the rest of the line is the payload.
+                final boolean goodLine = field == numbers.length;
+                final int payloadStart = pos;
+                int payloadEnd = pos;
+
+                while (pos < limit && !lineEnded) {
+
+                    final byte b = buffer.get(pos++);
+
+                    if (b == '\n') {
+                        break;
+                    }
+
+                    if (b != '\r') {
+                        payloadEnd = pos;
+                    }
+                }
+
+                bytesParsed += pos - lineStart;
+
+                if (!goodLine) {
+                    badLines++;
+                    continue;
+                }
+
+                json.setLength(0);
+                json.append(JSON_START);
+                appendPayload(buffer, payloadStart, payloadEnd);
+                json.append(JSON_MIDDLE);
+                json.append(numbers[2]);
+                json.append(JSON_END);
+                linesParsed++;
+
+                parseNanos += System.nanoTime() - startNanos;
+                send(numbers[0], numbers[1], json.toString());
+                startNanos = System.nanoTime();
+            }
+
+            parseNanos += System.nanoTime() - startNanos;
+        }
+
+        /**
+         * Decode a payload as UTF-8, remove any CSV quoting, and add it to our
+         * JSON as a properly escaped string.
+         *
+         * @param buffer
+         * @param start  first byte of the payload
+         * @param end    byte after the payload
+         */
+        private void appendPayload(MappedByteBuffer buffer, int start, int end) {
+
+            // UTF-8 never needs more chars than bytes...
+            if (payloadChars.capacity() < end - start) {
+                payloadChars = CharBuffer.allocate(end - start);
+            }
+
+            payloadChars.clear();
+            decoder.reset();
+
+            buffer.limit(end);
+            buffer.position(start);
+            decoder.decode(buffer, payloadChars, true);
+            decoder.flush(payloadChars);
+            buffer.limit(buffer.capacity());
+
+            payloadChars.flip();
+
+            int from = 0;
+            int to = payloadChars.limit();
+
+            final boolean quoted = to >= 2 && payloadChars.get(0) == '"' && payloadChars.get(to - 1) == '"';
+
+            if (quoted) {
+                from++;
+                to--;
+            }
+
+            for (int i = from; i < to; i++) {
+
+                final char c = payloadChars.get(i);
+
+                // A quote inside a quoted field is written twice...
+                if (quoted && c == '"' && i + 1 < to && payloadChars.get(i + 1) == '"') {
+                    i++;
+                }
+
+                if (c == '"' || c == '\\') {
+                    json.append('\\');
+                    json.append(c);
+                } else if (c < ' ') {
+                    json.append("\\u00");
+                    json.append(HEX_DIGITS[c >> 4]);
+                    json.append(HEX_DIGITS[c & 0xf]);
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+    }
+
+    Client client;
+    SafeHistogramCache shc;
+    FileChannel channel;
+    String fileName;
+    int threadCount;
+    Semaphore inFlight;
+    Date lastSeen = new Date();
+    ConcurrentLinkedQueue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+    AtomicLong sentCount = new AtomicLong();
+
+    /**
+     * @param client      VoltDB client, or null if we only want to see how fast
+     *                    we can parse
+     * @param shc
+     * @param fileName
+     * @param threadCount how many threads parse the file
+     * @param maxInFlight most UpsertUser calls we have outstanding
+     */
+    public SubscriberCsvImporter(Client client, SafeHistogramCache shc, String fileName, int threadCount,
+            int maxInFlight) {
+        this.client = client;
+        this.shc = shc;
+        this.fileName = fileName;
+        this.threadCount = threadCount;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+    }
+
+    /**
+     * Import the whole file, reporting parse and load rates when done.
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void importFile() throws IOException, InterruptedException {
+
+        try (RandomAccessFile raf = new RandomAccessFile(fileName, "r")) {
+
+            channel = raf.getChannel();
+            final long fileSize = channel.size();
+
+            splitIntoChunks(fileSize);
+            BaseChargingDemo.msg("Importing " + fileSize + " bytes from " + fileName + " in " + chunks.size()
+                    + " chunks using " + threadCount + " threads");
+
+            final long startMs = System.currentTimeMillis();
+
+            ArrayList<ChunkParser> parsers = new ArrayList<>();
+            Thread[] parserThreads = new Thread[threadCount];
+
+            for (int i = 0; i < threadCount; i++) {
+                ChunkParser parser = new ChunkParser();
+                parsers.add(parser);
+                parserThreads[i] = new Thread(parser, "SubscriberCsvImporter_" + i);
+                parserThreads[i].start();
+            }
+
+            for (Thread parserThread : parserThreads) {
+                parserThread.join();
+            }
+
+            if (client != null) {
+                BaseChargingDemo.msg("All " + sentCount.get() + " entries in queue, waiting for it to drain...");
+                client.drain();
+            }
+
+            final long elapsedMs = Math.max(1, System.currentTimeMillis() - startMs);
+
+            long linesParsed = 0;
+            long bytesParsed = 0;
+            long badLines = 0;
+            long parseNanos = 0;
+
+            for (ChunkParser parser : parsers) {
+                linesParsed += parser.linesParsed;
+                bytesParsed += parser.bytesParsed;
+                badLines += parser.badLines;
+                parseNanos += parser.parseNanos;
+            }
+
+            // Parse rate is based on time spent parsing, so it doesn't include
+            // time spent waiting for VoltDB...
+            final double parseSeconds = Math.max(1, parseNanos / threadCount) / 1000000000d;
+
+            BaseChargingDemo.msg("Parsed " + linesParsed + " lines (" + badLines + " skipped), "
+                    + (long) (linesParsed / parseSeconds) + " lines/sec, "
+                    + (long) (bytesParsed / parseSeconds / (1024 * 1024)) + " MB/sec");
+
+            if (client != null) {
+                final long imported = shc.getCounter(IMPORTED_USERS);
+                BaseChargingDemo.msg("Loaded " + imported + " users (" + shc.getCounter(IMPORT_ERRORS) + " errors) in "
+                        + elapsedMs + "ms, " + ((imported * 1000) / elapsedMs) + " users/sec");
+                BaseChargingDemo.msg(shc.get(UPSERT_USER).toString());
+            }
+        }
+
+    }
+
+    /**
+     * Split the file into chunks that each start at the beginning of a line.
+     *
+     * @param fileSize
+     * @throws IOException
+     */
+    private void splitIntoChunks(long fileSize) throws IOException {
+
+        long chunkSize = Math.min(MAX_CHUNK_BYTES, (fileSize / (threadCount * CHUNKS_PER_THREAD)) + 1);
+
+        ByteBuffer searchBuffer = ByteBuffer.allocate(NEWLINE_SEARCH_BYTES);
+        long chunkStart = 0;
+
+        while (chunkStart < fileSize) {
+
+            long chunkEnd = Math.min(chunkStart + chunkSize, fileSize);
+
+            // Move forward to the start of the next line...
+            if (chunkEnd < fileSize) {
+                chunkEnd = findNextLine(searchBuffer, chunkEnd, fileSize);
+            }
+
+            chunks.add(new Chunk(chunkStart, chunkEnd - chunkStart));
+            chunkStart = chunkEnd;
+        }
+    }
+
+    /**
+     * @param searchBuffer
+     * @param from
+     * @param fileSize
+     * @return where the line after the one containing 'from' starts, or
+     *         'fileSize' if there isn't one
+     * @throws IOException
+     */
+    private long findNextLine(ByteBuffer searchBuffer, long from, long fileSize) throws IOException {
+
+        long searchStart = from;
+
+        while (searchStart < fileSize) {
+
+            searchBuffer.clear();
+            final int bytesRead = channel.read(searchBuffer, searchStart);
+
+            if (bytesRead <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < bytesRead; i++) {
+                if (searchBuffer.get(i) == '\n') {
+                    return searchStart + i + 1;
+                }
+            }
+
+            searchStart += bytesRead;
+        }
+
+        return fileSize;
+    }
+
+    /**
+     * Send a user to UpsertUser, waiting if we have too many requests in flight.
+     *
+     * @param userId
+     * @param balance
+     * @param json
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void send(long userId, long balance, String json) throws IOException, InterruptedException {
+
+        if (client == null) {
+            return;
+        }
+
+        inFlight.acquire();
+
+        ImportUserCallback theCallback = new ImportUserCallback(shc, inFlight);
+
+        if (!client.callProcedure(theCallback, UPSERT_USER, userId, balance, json, "Imported", lastSeen,
+                "Import_" + userId)) {
+            inFlight.release();
+            shc.incCounter(IMPORT_ERRORS);
+        }
+
+        final long sent = sentCount.incrementAndGet();
+
+        if (sent % 1000000 == 0) {
+            BaseChargingDemo.msg("Sent " + sent + " users...");
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Background task that removes old rows from user_recent_transactions, so that
+ * ReportQuotaUsage and AddCredit don't have to. It works its way through the
+ * partitions one call at a time, so it never has more than one request in
+ * flight, and pauses between passes when there is nothing left to do.
+ *
+ */
+public class TransactionHistorySweeper implements Runnable {
+
+    public static final String PURGE_OLD_TRANSACTIONS = "PurgeOldTransactions";
+    public static final String PURGED_TRANSACTIONS = "PURGED_TRANSACTIONS";
+
+    /**
+     * Same as the cutoff AddCredit uses when cleaning up inline, which is the
+     * longer of the two, so we spot duplicates for as long as we used to.
+     */
+    public static final int DEFAULT_MAX_AGE_SECONDS = 300;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_PAUSE_MS = 1000;
+
+    Client client;
+    SafeHistogramCache shc;
+    int maxAgeSeconds;
+    int batchSize;
+    int pauseMs;
+
+    volatile boolean keepGoing = true;
+
+    /**
+     * @param client
+     * @param shc
+     * @param maxAgeSeconds how long we keep transactions for
+     * @param batchSize     most rows deleted per partition per call
+     * @param pauseMs       how long we wait when a pass didn't fill any batches
+     */
+    public TransactionHistorySweeper(Client client, SafeHistogramCache shc, int maxAgeSeconds, int batchSize,
+            int pauseMs) {
+        this.client = client;
+        this.shc = shc;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+
+            final long[] partitionKeys = BaseChargingDemo.getPartitionKeys(client);
+            BaseChargingDemo.msg("TransactionHistorySweeper: sweeping " + partitionKeys.length + " partitions");
+
+            while (keepGoing) {
+
+                boolean batchFilled = false;
+
+                for (int i = 0; i < partitionKeys.length && keepGoing; i++) {
+
+                    final long startMs = System.currentTimeMillis();
+                    ClientResponse cr = client.callProcedure(PURGE_OLD_TRANSACTIONS, partitionKeys[i],
+                            maxAgeSeconds, batchSize);
+                    shc.reportLatency(PURGE_OLD_TRANSACTIONS, startMs, PURGE_OLD_TRANSACTIONS,
+                            BaseChargingDemo.HISTOGRAM_SIZE_MS);
+
+                    final long deleted = cr.getResults()[0].asScalarLong();
+                    shc.incCounter(PURGED_TRANSACTIONS, (int) deleted);
+
+                    if (deleted >= batchSize) {
+                        batchFilled = true;
+                    }
+                }
+
+                // Only go straight round again if there's a backlog...
+                if (!batchFilled && keepGoing) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            BaseChargingDemo.msg("TransactionHistorySweeper: interrupted");
+        } catch (Exception e) {
+            BaseChargingDemo.msg("TransactionHistorySweeper: " + e.getMessage());
+        }
+
+        BaseChargingDemo.msg("TransactionHistorySweeper: finished, " + shc.getCounter(PURGED_TRANSACTIONS)
+                + " transactions purged");
+    }
+
+    /**
+     * Ask sweeper to stop after its current call.
+     */
+    public void stop() {
+        keepGoing = false;
+    }
+
+}
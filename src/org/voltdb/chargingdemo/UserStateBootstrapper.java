@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.NoConnectionsException;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Fills in our UserTransactionState records with what VoltDB knows about each
+ * user - balance, reservations and open session - so a benchmark run doesn't
+ * have to start by assuming everyone has unlimited credit.
+ * <p>
+ * A user can have more than one open session. We carry on with the most
+ * recent one, so currentlyReserved is what that session reserved, as that's
+ * what ReportQuotaUsage will free. Every session's reservation still comes off
+ * spendableBalance.
+ *
+ * Each user only appears on one page, so we don't need to synchronize changes
+ * to a user's state.
+ *
+ */
+public class UserStateBootstrapper implements PartitionBalanceScanner.PageHandler {
+
+    UserTransactionState[] users;
+
+    AtomicLong loadedUsers = new AtomicLong();
+    AtomicLong usersWithSessions = new AtomicLong();
+    AtomicLong extraSessions = new AtomicLong();
+
+    /**
+     * @param users records to fill in. Users we don't find are left alone.
+     */
+    public UserStateBootstrapper(UserTransactionState[] users) {
+        this.users = users;
+    }
+
+    @Override
+    public void handlePage(VoltTable[] page) {
+
+        VoltTable balances = page[0];
+
+        while (balances.advanceRow()) {
+
+            final long userId = balances.getLong("userid");
+
+            if (userId >= 0 && userId < users.length) {
+                users[(int) userId].spendableBalance = balances.getLong("balance");
+                users[(int) userId].currentlyReserved = 0;
+                loadedUsers.incrementAndGet();
+            }
+        }
+
+        VoltTable reservations = page[1];
+        long lastUserId = Long.MIN_VALUE;
+
+        // Sessions come in sessionid order, so the last one we see for a
+        // user is the most recent...
+        while (reservations.advanceRow()) {
+
+            final long userId = reservations.getLong("userid");
+
+            if (userId >= 0 && userId < users.length) {
+
+                final long reserved = reservations.getLong("allocated_amount");
+
+                users[(int) userId].currentlyReserved = reserved;
+                users[(int) userId].spendableBalance -= reserved;
+                users[(int) userId].sessionId = reservations.getLong("sessionid");
+
+                if (userId == lastUserId) {
+                    extraSessions.incrementAndGet();
+                } else {
+                    usersWithSessions.incrementAndGet();
+                }
+
+                lastUserId = userId;
+            }
+        }
+    }
+
+    /**
+     * Load state for every user, one thread per partition, and log how long it
+     * took.
+     *
+     * @param client
+     * @param shc
+     * @param users
+     * @return how long it took in milliseconds
+     * @throws InterruptedException
+     * @throws IOException
+     * @throws NoConnectionsException
+     * @throws ProcCallException
+     */
+    public static long bootstrap(Client client, SafeHistogramCache shc, UserTransactionState[] users)
+            throws InterruptedException, IOException, NoConnectionsException, ProcCallException {
+
+        UserStateBootstrapper bootstrapper = new UserStateBootstrapper(users);
+
+        final long elapsedMs = PartitionBalanceScanner.scanAllPartitions(client, shc,
+                PartitionBalanceScanner.DEFAULT_PAGE_SIZE, bootstrapper);
+
+        final long loaded = bootstrapper.loadedUsers.get();
+
+        BaseChargingDemo.msg("Bootstrap: loaded " + loaded + " of " + users.length + " users in " + elapsedMs
+                + "ms, " + ((loaded * 1000) / elapsedMs) + " users per second, "
+                + bootstrapper.usersWithSessions.get() + " with open sessions");
+
+        if (bootstrapper.extraSessions.get() > 0) {
+            BaseChargingDemo.msg("Bootstrap: " + bootstrapper.extraSessions.get()
+                    + " older sessions will keep their reservations until they expire");
+        }
+
+        if (loaded < users.length) {
+            BaseChargingDemo.msg("Bootstrap: " + (users.length - loaded)
+                    + " users weren't found and will start with unlimited credit");
+        }
+
+        return elapsedMs;
+    }
+
+}
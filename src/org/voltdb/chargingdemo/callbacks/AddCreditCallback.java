@@ -12,18 +12,39 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import org.voltdb.VoltTable;
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.chargingdemo.ShadowLedger;
 import org.voltdb.chargingdemo.UserTransactionState;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
 
+import chargingdemoprocs.CompactResponse;
 import chargingdemoprocs.ReferenceData;
 
 public class AddCreditCallback implements ProcedureCallback {
 
     UserTransactionState userTransactionState;
+    SafeHistogramCache shc;
+    boolean compactResponse;
+    ShadowLedger ledger;
+    long extraCredit;
 
-    public AddCreditCallback(UserTransactionState userTransactionState) {
+    /**
+     * @param userTransactionState
+     * @param shc
+     * @param compactResponse      true if we asked for a single CompactResponse
+     *                             row
+     * @param ledger               ShadowLedger to tell about credit, or null
+     * @param extraCredit          amount of credit we're adding
+     */
+    public AddCreditCallback(UserTransactionState userTransactionState, SafeHistogramCache shc,
+            boolean compactResponse, ShadowLedger ledger, long extraCredit) {
         this.userTransactionState = userTransactionState;
+        this.shc = shc;
+        this.compactResponse = compactResponse;
+        this.ledger = ledger;
+        this.extraCredit = extraCredit;
     }
 
     @Override
@@ -31,37 +52,91 @@ public class AddCreditCallback implements ProcedureCallback {
 
         if (arg0.getStatus() == ClientResponse.SUCCESS) {
 
-            if (arg0.getAppStatus() == ReferenceData.STATUS_CREDIT_ADDED) {
+            // If the credit was already added this is a retry of a call that
+            // worked but we never heard back from, so it's still one credit...
+            if (arg0.getAppStatus() == ReferenceData.STATUS_CREDIT_ADDED
+                    || arg0.getAppStatus() == ReferenceData.STATUS_TXN_ALREADY_HAPPENED) {
 
-                userTransactionState.endTran();
-
-                VoltTable balanceTable = arg0.getResults()[arg0.getResults().length - 2];
-                VoltTable reservationTable = arg0.getResults()[arg0.getResults().length - 1];
+                // The ledger has to be right before this user's next
+                // transaction can start...
+                if (ledger != null) {
+                    ledger.credit(userTransactionState.id, extraCredit);
+                }
 
-                if (balanceTable.advanceRow()) {
+                userTransactionState.endTran();
 
-                    long balance = balanceTable.getLong("balance");
-                    long reserved = 0;
+                final long decodeStartNanos = System.nanoTime();
 
-                    if (reservationTable.advanceRow()) {
-                        reserved = reservationTable.getLong("allocated_amount");
-                        if (reservationTable.wasNull()) {
-                            reserved = 0;
-                        }
-                    }
+                if (compactResponse) {
+                    decodeCompactResponse(arg0);
+                } else {
+                    decodeFullResponse(arg0);
+                }
 
-                    userTransactionState.currentlyReserved = reserved;
-                    userTransactionState.spendableBalance = balance - reserved;
+                shc.reportLatencyNanos(BaseChargingDemo.ADD_CREDIT_DECODE, decodeStartNanos,
+                        BaseChargingDemo.ADD_CREDIT_DECODE, BaseChargingDemo.DECODE_HISTOGRAM_SIZE_NS, 1);
+                BaseChargingDemo.reportResponseSize(shc, BaseChargingDemo.ADD_CREDIT, arg0);
 
-                }
             } else {
                 msg("AddCreditCallback user=" + userTransactionState.id + ":" + arg0.getAppStatusString());
             }
         } else {
+
+            if (ledger != null) {
+                ledger.uncertain(userTransactionState.id);
+            }
+
             msg("AddCreditCallback user=" + userTransactionState.id + ":" + arg0.getStatusString());
         }
     }
 
+    /**
+     * Find balance and reservations in the separate tables AddCredit returns by
+     * default.
+     *
+     * @param arg0
+     */
+    private void decodeFullResponse(ClientResponse arg0) {
+
+        VoltTable balanceTable = arg0.getResults()[arg0.getResults().length - 2];
+        VoltTable reservationTable = arg0.getResults()[arg0.getResults().length - 1];
+
+        if (balanceTable.advanceRow()) {
+
+            long balance = balanceTable.getLong("balance");
+            long reserved = 0;
+
+            if (reservationTable.advanceRow()) {
+                reserved = reservationTable.getLong("allocated_amount");
+                if (reservationTable.wasNull()) {
+                    reserved = 0;
+                }
+            }
+
+            userTransactionState.currentlyReserved = reserved;
+            userTransactionState.spendableBalance = balance - reserved;
+
+        }
+    }
+
+    /**
+     * Read balance and reservations from a single CompactResponse row.
+     *
+     * @param arg0
+     */
+    private void decodeCompactResponse(ClientResponse arg0) {
+
+        VoltTable compactTable = arg0.getResults()[0];
+
+        if (compactTable.advanceRow()) {
+
+            final long reserved = compactTable.getLong(CompactResponse.RESERVED_COLUMN);
+            userTransactionState.currentlyReserved = reserved;
+            userTransactionState.spendableBalance = compactTable.getLong(CompactResponse.BALANCE_COLUMN) - reserved;
+
+        }
+    }
+
     /**
      * Print a formatted message.
      *
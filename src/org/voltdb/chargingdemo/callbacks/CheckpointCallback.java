@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.callbacks;
+
+
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.chargingdemo.ProgressCheckpoint;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+
+/**
+ * Callback that tells a ProgressCheckpoint when a call for a given id worked,
+ * and complains if something went badly wrong.
+ *
+ */
+public class CheckpointCallback implements ProcedureCallback {
+
+    ProgressCheckpoint checkpoint;
+    int worker;
+    long id;
+
+    /**
+     * @param checkpoint
+     * @param worker     which of the checkpoint's workers made this call
+     * @param id         id this call was for
+     */
+    public CheckpointCallback(ProgressCheckpoint checkpoint, int worker, long id) {
+        this.checkpoint = checkpoint;
+        this.worker = worker;
+        this.id = id;
+    }
+
+    @Override
+    public void clientCallback(ClientResponse arg0) throws Exception {
+
+        if (arg0.getStatus() == ClientResponse.SUCCESS) {
+            checkpoint.acknowledge(worker, id, id);
+        } else {
+            BaseChargingDemo.msg("Error Code " + arg0.getStatusString());
+        }
+
+    }
+
+}
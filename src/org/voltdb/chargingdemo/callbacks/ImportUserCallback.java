@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.callbacks;
+
+
+import java.util.concurrent.Semaphore;
+
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.chargingdemo.SubscriberCsvImporter;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Callback for users loaded by SubscriberCsvImporter. Counts how many worked
+ * and lets the importer send another request.
+ *
+ */
+public class ImportUserCallback implements ProcedureCallback {
+
+    SafeHistogramCache shc;
+    Semaphore inFlight;
+    final long startMs = System.currentTimeMillis();
+
+    /**
+     * @param shc
+     * @param inFlight released when we get a response
+     */
+    public ImportUserCallback(SafeHistogramCache shc, Semaphore inFlight) {
+        this.shc = shc;
+        this.inFlight = inFlight;
+    }
+
+    @Override
+    public void clientCallback(ClientResponse arg0) throws Exception {
+
+        inFlight.release();
+
+        shc.reportLatency(SubscriberCsvImporter.UPSERT_USER, startMs, SubscriberCsvImporter.UPSERT_USER,
+                BaseChargingDemo.HISTOGRAM_SIZE_MS);
+
+        if (arg0.getStatus() == ClientResponse.SUCCESS) {
+            shc.incCounter(SubscriberCsvImporter.IMPORTED_USERS);
+        } else {
+            shc.incCounter(SubscriberCsvImporter.IMPORT_ERRORS);
+            BaseChargingDemo.msg("ImportUserCallback: " + arg0.getStatusString());
+        }
+
+    }
+
+}
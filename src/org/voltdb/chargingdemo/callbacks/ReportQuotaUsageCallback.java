@@ -13,22 +13,39 @@ import java.util.Date;
 
 import org.voltdb.VoltTable;
 import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.chargingdemo.ShadowLedger;
 import org.voltdb.chargingdemo.UserTransactionState;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.voltutil.stats.SafeHistogramCache;
 
+import chargingdemoprocs.CompactResponse;
 import chargingdemoprocs.ReferenceData;
 
 public class ReportQuotaUsageCallback implements ProcedureCallback {
 
     UserTransactionState userTransactionState;
     SafeHistogramCache shc;
+    boolean compactResponse;
+    ShadowLedger ledger;
+    long unitsUsed;
     final long startNanos = System.nanoTime();
 
-    public ReportQuotaUsageCallback(UserTransactionState userTransactionState, SafeHistogramCache shc) {
+    /**
+     * @param userTransactionState
+     * @param shc
+     * @param compactResponse      true if we asked for a single CompactResponse
+     *                             row
+     * @param ledger               ShadowLedger to tell about spending, or null
+     * @param unitsUsed            amount we're spending
+     */
+    public ReportQuotaUsageCallback(UserTransactionState userTransactionState, SafeHistogramCache shc,
+            boolean compactResponse, ShadowLedger ledger, long unitsUsed) {
         this.userTransactionState = userTransactionState;
         this.shc = shc;
+        this.compactResponse = compactResponse;
+        this.ledger = ledger;
+        this.unitsUsed = unitsUsed;
     }
 
     /*
@@ -53,37 +70,33 @@ public class ReportQuotaUsageCallback implements ProcedureCallback {
 
             shc.report(BaseChargingDemo.REPORT_QUOTA_USAGE, thisLatency, strDate, BaseChargingDemo.HISTOGRAM_SIZE_MS);
 
-            // if we have an expected response...
+            // if we have an expected response... STATUS_TXN_ALREADY_HAPPENED is
+            // a retry of a call that worked but we never heard back from. It
+            // comes with the session the first attempt used, so we can still
+            // release what it reserved...
             if (arg0.getAppStatus() == ReferenceData.STATUS_ALL_UNITS_ALLOCATED
                     || arg0.getAppStatus() == ReferenceData.STATUS_SOME_UNITS_ALLOCATED
                     || arg0.getAppStatus() == ReferenceData.STATUS_NO_MONEY
-                    || arg0.getAppStatus() == ReferenceData.STATUS_OK) {
+                    || arg0.getAppStatus() == ReferenceData.STATUS_OK
+                    || arg0.getAppStatus() == ReferenceData.STATUS_TXN_ALREADY_HAPPENED) {
+
+                // The ledger has to be right before this user's next
+                // transaction can start...
+                if (ledger != null) {
+                    ledger.spend(userTransactionState.id, unitsUsed);
+                }
 
                 // Mark transaction as finished so we can start another one
                 userTransactionState.endTran();
 
-                // Get balance for user, based on finished transactions.
-                VoltTable balanceTable = arg0.getResults()[arg0.getResults().length - 2];
-
-                // Get total value of outstanding reservations
-                VoltTable reservationTable = arg0.getResults()[arg0.getResults().length - 1];
-
-                if (balanceTable.advanceRow()) {
+                final long decodeStartNanos = System.nanoTime();
+                final boolean hasBalance = compactResponse ? decodeCompactResponse(arg0) : decodeFullResponse(arg0);
 
-                    long balance = balanceTable.getLong("balance");
-                    userTransactionState.sessionId = balanceTable.getLong("sessionid");
+                shc.reportLatencyNanos(BaseChargingDemo.REPORT_QUOTA_USAGE_DECODE, decodeStartNanos,
+                        BaseChargingDemo.REPORT_QUOTA_USAGE_DECODE, BaseChargingDemo.DECODE_HISTOGRAM_SIZE_NS, 1);
+                BaseChargingDemo.reportResponseSize(shc, BaseChargingDemo.REPORT_QUOTA_USAGE, arg0);
 
-                    long reserved = 0;
-
-                    if (reservationTable.advanceRow()) {
-                        reserved = reservationTable.getLong("allocated_amount");
-                        if (reservationTable.wasNull()) {
-                            reserved = 0;
-                        }
-                    }
-
-                    userTransactionState.currentlyReserved = reserved;
-                    userTransactionState.spendableBalance = balance - reserved;
+                if (hasBalance) {
 
                     // We should never see a negative balance...
                     if (userTransactionState.spendableBalance < 0) {
@@ -105,6 +118,10 @@ public class ReportQuotaUsageCallback implements ProcedureCallback {
         } else {
             // We got some form of Volt error code.
 
+            if (ledger != null) {
+                ledger.uncertain(userTransactionState.id);
+            }
+
             shc.reportLatency(BaseChargingDemo.REPORT_QUOTA_USAGE + "FAIL", startNanos,
                     BaseChargingDemo.REPORT_QUOTA_USAGE + "FAIL", BaseChargingDemo.HISTOGRAM_SIZE_MS);
 
@@ -113,4 +130,65 @@ public class ReportQuotaUsageCallback implements ProcedureCallback {
         }
     }
 
+    /**
+     * Find balance and reservations in the separate tables ReportQuotaUsage
+     * returns by default.
+     *
+     * @param arg0
+     * @return true if we found a balance
+     */
+    private boolean decodeFullResponse(ClientResponse arg0) {
+
+        // Get balance for user, based on finished transactions.
+        VoltTable balanceTable = arg0.getResults()[arg0.getResults().length - 2];
+
+        // Get total value of outstanding reservations
+        VoltTable reservationTable = arg0.getResults()[arg0.getResults().length - 1];
+
+        if (balanceTable.advanceRow()) {
+
+            long balance = balanceTable.getLong("balance");
+            userTransactionState.sessionId = balanceTable.getLong("sessionid");
+
+            long reserved = 0;
+
+            if (reservationTable.advanceRow()) {
+                reserved = reservationTable.getLong("allocated_amount");
+                if (reservationTable.wasNull()) {
+                    reserved = 0;
+                }
+            }
+
+            userTransactionState.currentlyReserved = reserved;
+            userTransactionState.spendableBalance = balance - reserved;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Read balance and reservations from a single CompactResponse row.
+     *
+     * @param arg0
+     * @return true if we found a balance
+     */
+    private boolean decodeCompactResponse(ClientResponse arg0) {
+
+        VoltTable compactTable = arg0.getResults()[0];
+
+        if (compactTable.advanceRow()) {
+
+            final long reserved = compactTable.getLong(CompactResponse.RESERVED_COLUMN);
+            userTransactionState.sessionId = compactTable.getLong(CompactResponse.SESSIONID_COLUMN);
+            userTransactionState.currentlyReserved = reserved;
+            userTransactionState.spendableBalance = compactTable.getLong(CompactResponse.BALANCE_COLUMN) - reserved;
+
+            return true;
+        }
+
+        return false;
+    }
+
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.callbacks;
+
+
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.chargingdemo.BulkUserLoader;
+import org.voltdb.chargingdemo.ProgressCheckpoint;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Callback for UpsertUserBatch. Keeps track of how many users have been loaded
+ * into each partition, and tells our ProgressCheckpoint which users are done.
+ *
+ */
+public class UpsertUserBatchCallback implements ProcedureCallback {
+
+    SafeHistogramCache shc;
+    long partitionId;
+    long[] userIds;
+    ProgressCheckpoint checkpoint;
+    int worker;
+    final long startMs = System.currentTimeMillis();
+
+    /**
+     * @param shc
+     * @param partitionId VoltDB partition all the users are in
+     * @param userIds     users in this call
+     * @param checkpoint
+     * @param worker      which of checkpoint's workers made this call
+     */
+    public UpsertUserBatchCallback(SafeHistogramCache shc, long partitionId, long[] userIds,
+            ProgressCheckpoint checkpoint, int worker) {
+        this.shc = shc;
+        this.partitionId = partitionId;
+        this.userIds = userIds;
+        this.checkpoint = checkpoint;
+        this.worker = worker;
+    }
+
+    @Override
+    public void clientCallback(ClientResponse arg0) throws Exception {
+
+        shc.reportLatency(BulkUserLoader.UPSERT_USER_BATCH, startMs, BulkUserLoader.UPSERT_USER_BATCH,
+                BaseChargingDemo.HISTOGRAM_SIZE_MS);
+
+        if (arg0.getStatus() == ClientResponse.SUCCESS) {
+            shc.incCounter(BulkUserLoader.LOADED_USERS_PARTITION + partitionId, userIds.length);
+
+            for (long userId : userIds) {
+                checkpoint.acknowledge(worker, userId, userId);
+            }
+        } else {
+            BaseChargingDemo.msg("UpsertUserBatchCallback partition=" + partitionId + ":" + arg0.getStatusString());
+        }
+
+    }
+
+}
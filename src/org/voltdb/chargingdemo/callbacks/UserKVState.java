@@ -34,6 +34,7 @@ import org.voltdb.chargingdemo.BaseChargingDemo;
  * OTHER DEALINGS IN THE SOFTWARE.
  */
 
+import org.voltdb.VoltTable;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.voltutil.stats.SafeHistogramCache;
@@ -52,6 +53,13 @@ public class UserKVState implements ProcedureCallback {
     public static final byte STATUS_LOCKED = 2;
     public static final byte STATUS_UPDATING = 3;
     public static final byte STATUS_LOCKED_BY_SOMEONE_ELSE = 4;
+    public static final byte STATUS_READING_VERSION = 5;
+    public static final byte STATUS_UPDATING_IF_VERSION_MATCHES = 6;
+
+    /**
+     * Value of 'version' when we haven't seen the user yet.
+     */
+    public static final long UNKNOWN_VERSION = -1;
 
     /**
      * Unique ID given to us by VoltDB that we use to prove that we are the owner of
@@ -84,6 +92,22 @@ public class UserKVState implements ProcedureCallback {
      */
     long lockedBySomeoneElseCount = 0;
 
+    /**
+     * Times UpdateLockedUser refused our update because someone else had locked
+     * the record since we did
+     */
+    long lockLostCount = 0;
+
+    /**
+     * Last version of the record we saw, or UNKNOWN_VERSION.
+     */
+    long version = UNKNOWN_VERSION;
+
+    /**
+     * Times an optimistic update failed because someone else changed the record
+     */
+    long versionChangedCount = 0;
+
     SafeHistogramCache shc;
 
     /**
@@ -140,11 +164,27 @@ public class UserKVState implements ProcedureCallback {
                 shc.reportLatencyMicros(BaseChargingDemo.KV_GET, txStartMicros, BaseChargingDemo.KV_GET,
                         BaseChargingDemo.HISTOGRAM_SIZE_MS, 1);
 
+                reportReadSize(arg0);
+
                 if (statusByte == ReferenceData.STATUS_RECORD_HAS_BEEN_SOFTLOCKED) {
 
                     userState = STATUS_LOCKED;
                     lockId = arg0.getAppStatusString();
 
+                    // The user record follows the update that locked it...
+                    VoltTable userTable = arg0.getResults()[1];
+
+                    if (userTable.advanceRow()) {
+                        version = userTable.getLong("user_version");
+                    }
+
+                } else if (statusByte == ReferenceData.STATUS_RECORD_SOFTLOCKED_NOT_MODIFIED) {
+
+                    // Our copy is still good, so we didn't get sent the record...
+                    userState = STATUS_LOCKED;
+                    lockId = arg0.getAppStatusString();
+                    shc.incCounter(BaseChargingDemo.KV_GET_NOT_MODIFIED);
+
                 } else if (statusByte == ReferenceData.STATUS_RECORD_ALREADY_SOFTLOCKED) {
 
                     userState = STATUS_LOCKED_BY_SOMEONE_ELSE;
@@ -160,19 +200,100 @@ public class UserKVState implements ProcedureCallback {
                 shc.reportLatencyMicros(BaseChargingDemo.KV_PUT, txStartMicros, BaseChargingDemo.KV_PUT,
                         BaseChargingDemo.HISTOGRAM_SIZE_MS, 1);
 
+                // We held the lock, so the version we knew about is now one higher...
+                if (statusByte == ReferenceData.STATUS_OK && version != UNKNOWN_VERSION) {
+                    version++;
+                }
+
                 lockId = "";
+
+                if (statusByte == ReferenceData.STATUS_RECORD_HAS_BEEN_SOFTLOCKED) {
+
+                    // Our lock expired and someone else has it now...
+                    userState = STATUS_LOCKED_BY_SOMEONE_ELSE;
+                    lockLostCount++;
+                    otherLockTimeMs = System.currentTimeMillis();
+
+                } else {
+                    userState = STATUS_UNLOCKED;
+                }
+
+            } else if (userState == STATUS_READING_VERSION) {
+
+                shc.reportLatencyMicros(BaseChargingDemo.KV_GET, txStartMicros, BaseChargingDemo.KV_GET,
+                        BaseChargingDemo.HISTOGRAM_SIZE_MS, 1);
+
+                reportReadSize(arg0);
+
+                VoltTable userTable = arg0.getResults()[0];
+
+                if (userTable.advanceRow()) {
+                    version = userTable.getLong("user_version");
+                }
+
                 userState = STATUS_UNLOCKED;
 
+            } else if (userState == STATUS_UPDATING_IF_VERSION_MATCHES) {
+
+                shc.reportLatencyMicros(BaseChargingDemo.KV_PUT, txStartMicros, BaseChargingDemo.KV_PUT,
+                        BaseChargingDemo.HISTOGRAM_SIZE_MS, 1);
+
+                if (statusByte == ReferenceData.STATUS_OK) {
+
+                    // New version is passed back the same way as a lock id...
+                    version = Long.parseLong(arg0.getAppStatusString());
+                    userState = STATUS_UNLOCKED;
+
+                } else if (statusByte == ReferenceData.STATUS_RECORD_VERSION_CHANGED) {
+
+                    // Someone else won, but we now know the current version...
+                    version = Long.parseLong(arg0.getAppStatusString());
+                    versionChangedCount++;
+                    userState = STATUS_UNLOCKED;
+
+                } else if (statusByte == ReferenceData.STATUS_RECORD_ALREADY_SOFTLOCKED) {
+
+                    userState = STATUS_LOCKED_BY_SOMEONE_ELSE;
+                    lockedBySomeoneElseCount++;
+                    otherLockTimeMs = System.currentTimeMillis();
+
+                } else {
+                    version = UNKNOWN_VERSION;
+                    userState = STATUS_UNLOCKED;
+                }
+
             }
 
         } else {
             BaseChargingDemo.msg("UserKVState.clientCallback: got status of " + arg0.getStatusString());
+
+            if (userState == STATUS_READING_VERSION || userState == STATUS_UPDATING_IF_VERSION_MATCHES) {
+                version = UNKNOWN_VERSION;
+                userState = STATUS_UNLOCKED;
+            }
         }
 
         // End transaction
         txStartMicros = 0;
     }
 
+    /**
+     * Keep track of how many bytes reads are sending back.
+     *
+     * @param arg0
+     */
+    private void reportReadSize(ClientResponse arg0) {
+
+        int responseBytes = 0;
+
+        for (VoltTable t : arg0.getResults()) {
+            responseBytes += t.getSerializedSize();
+        }
+
+        shc.incCounter(BaseChargingDemo.KV_GET_RESPONSES);
+        shc.incCounter(BaseChargingDemo.KV_GET_RESPONSE_BYTES, responseBytes);
+    }
+
     /**
      * @return the lockId
      */
@@ -200,6 +321,10 @@ public class UserKVState implements ProcedureCallback {
         builder.append(txStartMicros);
         builder.append(", lockedBySomeoneElseCount=");
         builder.append(lockedBySomeoneElseCount);
+        builder.append(", version=");
+        builder.append(version);
+        builder.append(", versionChangedCount=");
+        builder.append(versionChangedCount);
         builder.append("]");
         return builder.toString();
     }
@@ -218,4 +343,25 @@ public class UserKVState implements ProcedureCallback {
         return otherLockTimeMs;
     }
 
+    /**
+     * @return the version we last saw, or UNKNOWN_VERSION
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the versionChangedCount
+     */
+    public long getVersionChangedCount() {
+        return versionChangedCount;
+    }
+
+    /**
+     * @return the lockLostCount
+     */
+    public long getLockLostCount() {
+        return lockLostCount;
+    }
+
 }
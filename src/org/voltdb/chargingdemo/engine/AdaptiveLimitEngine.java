@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import java.io.IOException;
+
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+
+/**
+ * Wraps another engine and only lets a ConcurrencyLimiter's worth of calls be
+ * in flight at once. When we're at the limit callProcedure waits here, where we
+ * can measure it, instead of inside the client library.
+ *
+ */
+public class AdaptiveLimitEngine implements ProcedureEngine {
+
+    ProcedureEngine engine;
+    ConcurrencyLimiter limiter;
+
+    /**
+     * @param engine  engine that actually makes the calls
+     * @param limiter
+     */
+    public AdaptiveLimitEngine(ProcedureEngine engine, ConcurrencyLimiter limiter) {
+        this.engine = engine;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... params)
+            throws IOException {
+
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+
+        final long startNanos = System.nanoTime();
+
+        ProcedureCallback limitedCallback = response -> {
+            limiter.release(System.nanoTime() - startNanos, response.getStatus() != ClientResponse.SUCCESS);
+            callback.clientCallback(response);
+        };
+
+        boolean queued = false;
+
+        try {
+            queued = engine.callProcedure(limitedCallback, procName, params);
+        } finally {
+            if (!queued) {
+                limiter.release(System.nanoTime() - startNanos, true);
+            }
+        }
+
+        return queued;
+    }
+
+    @Override
+    public void setPriority(String procName, int priority) {
+        engine.setPriority(procName, priority);
+    }
+
+    @Override
+    public void drain() throws InterruptedException, IOException {
+        engine.drain();
+    }
+
+    @Override
+    public EngineStatsContext createStatsContext() {
+        return engine.createStatsContext();
+    }
+
+    @Override
+    public void reportStats() {
+        engine.reportStats();
+        limiter.report();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        engine.close();
+    }
+
+    @Override
+    public String getName() {
+        return engine.getName() + "+" + limiter.algorithm;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Keeps track of when the client library tells us it's backpressured, so we
+ * know how often and for how long it happened.
+ *
+ */
+public class BackpressureTracker {
+
+    public static final String BACKPRESSURE_EVENTS = "BACKPRESSURE_EVENTS";
+    public static final String BACKPRESSURE_MS = "BACKPRESSURE_MS";
+
+    SafeHistogramCache shc;
+
+    volatile boolean backpressured = false;
+    long startMs = 0;
+    long totalMs = 0;
+
+    /**
+     * @param shc
+     */
+    public BackpressureTracker(SafeHistogramCache shc) {
+        this.shc = shc;
+    }
+
+    /**
+     * Called when the client library starts or stops being backpressured.
+     *
+     * @param on
+     */
+    public synchronized void setBackpressure(boolean on) {
+
+        if (on && !backpressured) {
+
+            backpressured = true;
+            startMs = System.currentTimeMillis();
+            shc.incCounter(BACKPRESSURE_EVENTS);
+
+        } else if (!on && backpressured) {
+
+            backpressured = false;
+            totalMs += System.currentTimeMillis() - startMs;
+            shc.reportLatency(BACKPRESSURE_MS, startMs, BACKPRESSURE_MS, BaseChargingDemo.HISTOGRAM_SIZE_MS);
+        }
+    }
+
+    /**
+     * @return true if we're backpressured right now
+     */
+    public boolean isBackpressured() {
+        return backpressured;
+    }
+
+    /**
+     * @return how long we've been backpressured for, including now
+     */
+    public synchronized long getTotalMs() {
+        return totalMs + (backpressured ? System.currentTimeMillis() - startMs : 0);
+    }
+
+}
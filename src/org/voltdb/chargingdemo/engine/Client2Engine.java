@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.client.Client2;
+import org.voltdb.client.Client2CallOptions;
+import org.voltdb.client.Client2Config;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Sends calls through the newer Client2 API, which hands back a
+ * CompletableFuture for each call. Unlike Client, where backpressure and
+ * timeouts happen out of sight, everything is explicit here:
+ * <ul>
+ * <li>We never have more than 'maxOutstanding' calls in flight. When we hit
+ * the limit callProcedure waits, and we record how long for.</li>
+ * <li>Every call has its own timeout, after which its callback gets a
+ * failure.</li>
+ * <li>Each procedure can have its own priority.</li>
+ * </ul>
+ * Callbacks are the same ProcedureCallbacks Client uses, so the benchmarks
+ * don't need to know which engine they're using.
+ *
+ */
+public class Client2Engine implements ProcedureEngine {
+
+    public static final String NAME = "CLIENT2";
+
+    public static final String CLIENT2_CALLS = "CLIENT2_CALLS";
+    public static final String CLIENT2_FAILED_CALLS = "CLIENT2_FAILED_CALLS";
+    public static final String CLIENT2_EXCEPTIONS = "CLIENT2_EXCEPTIONS";
+    public static final String CLIENT2_WAITS = "CLIENT2_WAITS";
+    public static final String CLIENT2_WAIT_FOR_SLOT = "CLIENT2_WAIT_FOR_SLOT";
+
+    public static final int DEFAULT_MAX_OUTSTANDING = 1000;
+    public static final int DEFAULT_TIMEOUT_MS = 10000;
+
+    Client2 client;
+    SafeHistogramCache shc;
+    int maxOutstanding;
+    long timeoutMs;
+    Semaphore inFlight;
+
+    Client2CallOptions defaultOptions;
+    HashMap<String, Client2CallOptions> procOptions = new HashMap<>();
+
+    /**
+     * Create a Client2 and connect it to VoltDB.
+     *
+     * @param commaDelimitedHostnames
+     * @param shc
+     * @param backpressure            where we report Client2 backpressure
+     * @param maxOutstanding          most calls we'll have in flight
+     * @param timeoutMs               how long we wait for each call
+     * @throws IOException
+     */
+    public Client2Engine(String commaDelimitedHostnames, SafeHistogramCache shc, BackpressureTracker backpressure,
+            int maxOutstanding, long timeoutMs) throws IOException {
+
+        this.shc = shc;
+        this.maxOutstanding = maxOutstanding;
+        this.timeoutMs = timeoutMs;
+        this.inFlight = new Semaphore(maxOutstanding);
+
+        // We do our own limiting, so the client's limit is just a safety net...
+        Client2Config config = new Client2Config().clientRequestLimit(maxOutstanding * 2)
+                .procedureCallTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .requestBackpressureHandler(slowdown -> backpressure.setBackpressure(slowdown));
+
+        client = ClientFactory.createClient(config);
+
+        BaseChargingDemo.msg("Client2 connecting to " + commaDelimitedHostnames + "...");
+        client.connectSync(commaDelimitedHostnames);
+        BaseChargingDemo.msg("Client2 connected to " + client.connectedHosts());
+
+        defaultOptions = getOptions(PRIORITY_DEFAULT);
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... params) {
+
+        if (!inFlight.tryAcquire()) {
+
+            final long waitStartMs = System.currentTimeMillis();
+            inFlight.acquireUninterruptibly();
+
+            shc.incCounter(CLIENT2_WAITS);
+            shc.reportLatency(CLIENT2_WAIT_FOR_SLOT, waitStartMs, CLIENT2_WAIT_FOR_SLOT,
+                    BaseChargingDemo.HISTOGRAM_SIZE_MS);
+        }
+
+        shc.incCounter(CLIENT2_CALLS);
+
+        Client2CallOptions options = procOptions.getOrDefault(procName, defaultOptions);
+
+        // complete() frees our slot, but won't be called if we never get as far
+        // as sending...
+        try {
+            client.callProcedureAsync(options, procName, params)
+                    .whenComplete((response, throwable) -> complete(callback, response, throwable));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+
+        return true;
+    }
+
+    /**
+     * Pass the response to the callback, then free up our slot.
+     *
+     * @param callback
+     * @param response
+     * @param throwable set if the call didn't get as far as VoltDB
+     */
+    private void complete(ProcedureCallback callback, ClientResponse response, Throwable throwable) {
+
+        try {
+            if (throwable != null) {
+                shc.incCounter(CLIENT2_EXCEPTIONS);
+                response = new ClientResponseImpl(ClientResponse.UNEXPECTED_FAILURE, new VoltTable[0],
+                        throwable.getMessage());
+            }
+
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                shc.incCounter(CLIENT2_FAILED_CALLS);
+            }
+
+            callback.clientCallback(response);
+
+        } catch (Exception e) {
+            BaseChargingDemo.msg("Client2Engine: " + e.getMessage());
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    @Override
+    public void setPriority(String procName, int priority) {
+        procOptions.put(procName, getOptions(priority));
+    }
+
+    /**
+     * @param priority
+     * @return call options with our timeout and 'priority'
+     */
+    private Client2CallOptions getOptions(int priority) {
+        return new Client2CallOptions().clientTimeout(timeoutMs, TimeUnit.MILLISECONDS).requestPriority(priority);
+    }
+
+    @Override
+    public void drain() throws InterruptedException {
+
+        // Once we have every slot all the callbacks have finished...
+        inFlight.acquire(maxOutstanding);
+        inFlight.release(maxOutstanding);
+    }
+
+    @Override
+    public EngineStatsContext createStatsContext() {
+        return new EngineStatsContext(client.createStatsContext());
+    }
+
+    @Override
+    public void reportStats() {
+
+        BaseChargingDemo.msg("Client2 max outstanding = " + maxOutstanding + ", timeout = " + timeoutMs + "ms");
+        BaseChargingDemo.msg("Client2 calls = " + shc.getCounter(CLIENT2_CALLS) + ", failed = "
+                + shc.getCounter(CLIENT2_FAILED_CALLS) + ", of which never reached VoltDB = "
+                + shc.getCounter(CLIENT2_EXCEPTIONS));
+        BaseChargingDemo.msg("Client2 calls that waited for a slot = " + shc.getCounter(CLIENT2_WAITS));
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+}
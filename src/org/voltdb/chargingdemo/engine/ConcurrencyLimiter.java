@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Decides how many calls we can have in flight, based on how long calls are
+ * taking. The idea is to keep just enough calls outstanding to keep the
+ * cluster busy, so that any queueing happens where we can see it instead of
+ * inside the client library or the server.
+ * <p>
+ * We keep track of the shortest round trip we've seen, which is roughly what
+ * a call costs when nothing is queued. Anything above that is time spent
+ * queueing.
+ * <ul>
+ * <li>AIMD adds about one to the limit for every limit's worth of calls that
+ * come back in less than twice the shortest round trip, and cuts it by 10% when
+ * one takes longer or fails. We cut it at most once per round trip, so one
+ * slow patch doesn't take us all the way down.</li>
+ * <li>VEGAS estimates how many calls are queued as limit * (1 - shortest /
+ * latest) and moves the limit up by about one per round trip if that's under
+ * VEGAS_ALPHA and down by about one per round trip if it's over VEGAS_BETA.
+ * </li>
+ * </ul>
+ * minRtt / rtt tells us how close we are to the knee of the latency curve. Near
+ * 1 means calls aren't waiting and we could go faster. As it drops, more and
+ * more of each round trip is spent queueing.
+ *
+ */
+public class ConcurrencyLimiter {
+
+    public static final String AIMD = "AIMD";
+    public static final String VEGAS = "VEGAS";
+
+    public static final String LIMITER_LIMIT = "LIMITER_LIMIT";
+    public static final String LIMITER_QUEUEING_DELAY_US = "LIMITER_QUEUEING_DELAY_US";
+    public static final String LIMITER_WAIT_MS = "LIMITER_WAIT_MS";
+    public static final String LIMITER_WAITS = "LIMITER_WAITS";
+    public static final String LIMITER_DROPS = "LIMITER_DROPS";
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MAX_LIMIT = 5000;
+
+    private static final int MIN_LIMIT = 1;
+
+    /**
+     * AIMD backs off when a call takes this many times the shortest round trip
+     */
+    private static final int AIMD_LATENCY_MULTIPLIER = 2;
+    private static final double AIMD_BACKOFF = 0.9;
+
+    /**
+     * VEGAS aims to have between VEGAS_ALPHA and VEGAS_BETA calls queued
+     */
+    private static final int VEGAS_ALPHA = 3;
+    private static final int VEGAS_BETA = 6;
+
+    /**
+     * We forget the shortest round trip now and again, in case things have
+     * changed
+     */
+    private static final long MIN_RTT_RESET_MS = 30000;
+
+    private static final int QUEUEING_DELAY_HISTOGRAM_SIZE_US = 1000000;
+    private static final long REPORT_INTERVAL_MS = 1000;
+
+    String algorithm;
+    SafeHistogramCache shc;
+    int maxLimit;
+
+    double limit;
+    int inFlight = 0;
+
+    long minRttNanos = Long.MAX_VALUE;
+    long nextMinRttResetMs = System.currentTimeMillis() + MIN_RTT_RESET_MS;
+
+    long lastBackoffNanos = 0;
+
+    long nextReportMs = System.currentTimeMillis() + REPORT_INTERVAL_MS;
+    long rttNanosThisInterval = 0;
+    long callsThisInterval = 0;
+
+    long rttNanosTotal = 0;
+    long callsTotal = 0;
+
+    /**
+     * @param algorithm    AIMD or VEGAS
+     * @param shc
+     * @param initialLimit
+     * @param maxLimit
+     */
+    public ConcurrencyLimiter(String algorithm, SafeHistogramCache shc, int initialLimit, int maxLimit) {
+        this.algorithm = algorithm;
+        this.shc = shc;
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.max(MIN_LIMIT, Math.min(initialLimit, this.maxLimit));
+    }
+
+    /**
+     * Wait until we're allowed another call in flight.
+     *
+     * @throws InterruptedException
+     */
+    public synchronized void acquire() throws InterruptedException {
+
+        if (inFlight >= (int) limit) {
+
+            final long waitStartMs = System.currentTimeMillis();
+
+            while (inFlight >= (int) limit) {
+                wait();
+            }
+
+            shc.incCounter(LIMITER_WAITS);
+            shc.reportLatency(LIMITER_WAIT_MS, waitStartMs, LIMITER_WAIT_MS, BaseChargingDemo.HISTOGRAM_SIZE_MS);
+        }
+
+        inFlight++;
+    }
+
+    /**
+     * Note that a call has finished and adjust our limit.
+     *
+     * @param rttNanos how long the call took
+     * @param dropped  true if it failed or timed out
+     */
+    public synchronized void release(long rttNanos, boolean dropped) {
+
+        inFlight--;
+
+        final long nowMs = System.currentTimeMillis();
+
+        if (nowMs > nextMinRttResetMs) {
+            minRttNanos = Long.MAX_VALUE;
+            nextMinRttResetMs = nowMs + MIN_RTT_RESET_MS;
+        }
+
+        if (dropped) {
+
+            shc.incCounter(LIMITER_DROPS);
+            backOff(rttNanos);
+
+        } else {
+
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+
+            rttNanosThisInterval += rttNanos;
+            callsThisInterval++;
+
+            shc.report(LIMITER_QUEUEING_DELAY_US, (int) ((rttNanos - minRttNanos) / 1000), LIMITER_QUEUEING_DELAY_US,
+                    QUEUEING_DELAY_HISTOGRAM_SIZE_US);
+
+            if (VEGAS.equals(algorithm)) {
+
+                final double queued = limit * (1 - ((double) minRttNanos / rttNanos));
+
+                // About 'limit' calls come back per round trip, so each one
+                // moves us 1 / limit...
+                if (queued < VEGAS_ALPHA) {
+                    limit = limit + (1 / limit);
+                } else if (queued > VEGAS_BETA) {
+                    limit = limit - (1 / limit);
+                }
+
+            } else if (rttNanos > minRttNanos * AIMD_LATENCY_MULTIPLIER) {
+                backOff(rttNanos);
+            } else {
+                limit = limit + (1 / limit);
+            }
+        }
+
+        limit = Math.max(MIN_LIMIT, Math.min(limit, maxLimit));
+
+        if (nowMs >= nextReportMs) {
+            reportInterval();
+            nextReportMs = nowMs + REPORT_INTERVAL_MS;
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Cut the limit, unless we already did so within the last round trip.
+     *
+     * @param rttNanos
+     */
+    private void backOff(long rttNanos) {
+
+        final long nowNanos = System.nanoTime();
+
+        if (nowNanos - lastBackoffNanos > rttNanos) {
+            limit = limit * AIMD_BACKOFF;
+            lastBackoffNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Print where we are once a second, and record the limit.
+     */
+    private void reportInterval() {
+
+        shc.reportSize(LIMITER_LIMIT, (int) limit, LIMITER_LIMIT, maxLimit + 1);
+
+        if (callsThisInterval > 0) {
+
+            final long rttNanos = rttNanosThisInterval / callsThisInterval;
+
+            BaseChargingDemo.msg(algorithm + " limit = " + (int) limit + ", in flight = " + inFlight + ", min rtt = "
+                    + (minRttNanos / 1000) + "us, avg rtt = " + (rttNanos / 1000) + "us, queueing = "
+                    + ((rttNanos - minRttNanos) / 1000) + "us, min rtt / rtt = " + getGradient(rttNanos));
+
+            rttNanosTotal += rttNanosThisInterval;
+            callsTotal += callsThisInterval;
+        }
+
+        rttNanosThisInterval = 0;
+        callsThisInterval = 0;
+    }
+
+    /**
+     * @param rttNanos
+     * @return minRtt / rtt, to two decimal places
+     */
+    private double getGradient(long rttNanos) {
+
+        if (rttNanos == 0 || minRttNanos == Long.MAX_VALUE) {
+            return 1;
+        }
+
+        return Math.round((100.0 * minRttNanos) / rttNanos) / 100.0;
+    }
+
+    /**
+     * @return how many calls we currently allow in flight
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Print a summary of the run.
+     */
+    public synchronized void report() {
+
+        final long avgRttNanos = callsTotal == 0 ? 0 : rttNanosTotal / callsTotal;
+
+        BaseChargingDemo.msg("Limiter = " + algorithm + ", final limit = " + (int) limit + ", max = " + maxLimit);
+        BaseChargingDemo.msg("Limiter waits = " + shc.getCounter(LIMITER_WAITS) + ", drops = "
+                + shc.getCounter(LIMITER_DROPS) + ", avg min rtt / rtt = " + getGradient(avgRttNanos));
+        BaseChargingDemo.msg(shc.getSize(LIMITER_LIMIT).toString());
+        BaseChargingDemo.msg(shc.get(LIMITER_QUEUEING_DELAY_US).toString());
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltdb.client.ClientAffinityStats;
+import org.voltdb.client.ClientStats;
+import org.voltdb.client.ClientStatsContext;
+
+/**
+ * Client stats for every client an engine uses. ClientStatsContexts can't be
+ * merged, so we keep one per client and add them up when asked.
+ *
+ */
+public class EngineStatsContext {
+
+    ClientStatsContext[] contexts;
+
+    /**
+     * @param contexts one for each client
+     */
+    public EngineStatsContext(ClientStatsContext... contexts) {
+        this.contexts = contexts;
+    }
+
+    /**
+     * @param engineContexts
+     * @return a context that covers every client in 'engineContexts'
+     */
+    public static EngineStatsContext combine(EngineStatsContext[] engineContexts) {
+
+        ArrayList<ClientStatsContext> allContexts = new ArrayList<>();
+
+        for (EngineStatsContext engineContext : engineContexts) {
+            for (ClientStatsContext context : engineContext.contexts) {
+                allContexts.add(context);
+            }
+        }
+
+        return new EngineStatsContext(allContexts.toArray(new ClientStatsContext[allContexts.size()]));
+    }
+
+    /**
+     * Get the latest stats.
+     *
+     * @return this
+     */
+    public EngineStatsContext fetch() {
+
+        for (ClientStatsContext context : contexts) {
+            context.fetch();
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the latest stats, and start counting again from now.
+     *
+     * @return this
+     */
+    public EngineStatsContext fetchAndResetBaseline() {
+
+        for (ClientStatsContext context : contexts) {
+            context.fetchAndResetBaseline();
+        }
+
+        return this;
+    }
+
+    /**
+     * @return stats for each connection, from every client
+     */
+    public List<ClientStats> getStatsByConnection() {
+
+        ArrayList<ClientStats> connectionStats = new ArrayList<>();
+
+        for (ClientStatsContext context : contexts) {
+            connectionStats.addAll(context.getStatsByConnection().values());
+        }
+
+        return connectionStats;
+    }
+
+    /**
+     * @return stats for each client
+     */
+    public List<ClientStats> getStatsByClient() {
+
+        ArrayList<ClientStats> clientStats = new ArrayList<>();
+
+        for (ClientStatsContext context : contexts) {
+            clientStats.add(context.getStats());
+        }
+
+        return clientStats;
+    }
+
+    /**
+     * @return how many calls were sent straight to the partition's leader
+     */
+    public long getAffinityCalls() {
+
+        long calls = 0;
+
+        for (ClientStatsContext context : contexts) {
+            ClientAffinityStats affinityStats = context.getAggregateAffinityStats();
+            calls += affinityStats.getAffinityReads() + affinityStats.getAffinityWrites();
+        }
+
+        return calls;
+    }
+
+    /**
+     * @return how many calls were sent to whichever host was next
+     */
+    public long getOtherCalls() {
+
+        long calls = 0;
+
+        for (ClientStatsContext context : contexts) {
+            ClientAffinityStats affinityStats = context.getAggregateAffinityStats();
+            calls += affinityStats.getRrReads() + affinityStats.getRrWrites();
+        }
+
+        return calls;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import java.io.IOException;
+
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.client.ClientStats;
+import org.voltdb.client.ProcedureCallback;
+
+/**
+ * Spreads calls over several engines, each with its own client, so that
+ * serialization and callbacks aren't all done by one client's network
+ * threads.
+ * <p>
+ * Every call the benchmarks make has a userid as its first parameter, and we
+ * use it to pick an engine. All of a user's callbacks therefore run on the
+ * same client, as they did when there was only one, so UserTransactionState
+ * and UserKVState don't need to be thread safe.
+ * <p>
+ * Each client has its own BackpressureTracker, so one client being
+ * backpressured isn't hidden by another that isn't.
+ *
+ */
+public class FanOutEngine implements ProcedureEngine {
+
+    ProcedureEngine[] engines;
+    EngineStatsContext clientStats;
+    int nextEngine = 0;
+
+    /**
+     * @param engines engines to spread calls over
+     */
+    public FanOutEngine(ProcedureEngine[] engines) {
+        this.engines = engines;
+
+        // What reportStats prints for each client is counted from now...
+        this.clientStats = createStatsContext();
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... params)
+            throws IOException {
+        return engines[getEngineId(params)].callProcedure(callback, procName, params);
+    }
+
+    /**
+     * @param params
+     * @return which engine the user in params[0] belongs to
+     */
+    private int getEngineId(Object[] params) {
+
+        if (params.length > 0 && params[0] instanceof Number) {
+            return (int) Math.floorMod(((Number) params[0]).longValue(), (long) engines.length);
+        }
+
+        // Not a user, so just take turns...
+        nextEngine = (nextEngine + 1) % engines.length;
+        return nextEngine;
+    }
+
+    @Override
+    public void setPriority(String procName, int priority) {
+        for (ProcedureEngine engine : engines) {
+            engine.setPriority(procName, priority);
+        }
+    }
+
+    @Override
+    public void drain() throws InterruptedException, IOException {
+        for (ProcedureEngine engine : engines) {
+            engine.drain();
+        }
+    }
+
+    /**
+     * @return a stats context that covers every client
+     */
+    @Override
+    public EngineStatsContext createStatsContext() {
+
+        EngineStatsContext[] engineStats = new EngineStatsContext[engines.length];
+
+        for (int i = 0; i < engines.length; i++) {
+            engineStats[i] = engines[i].createStatsContext();
+        }
+
+        return EngineStatsContext.combine(engineStats);
+    }
+
+    @Override
+    public void reportStats() {
+
+        engines[0].reportStats();
+
+        int clientId = 0;
+
+        for (ClientStats stats : clientStats.fetch().getStatsByClient()) {
+            BaseChargingDemo.msg("Client " + clientId++ + ": " + stats.getInvocationsCompleted() + " calls, "
+                    + stats.getTxnThroughput() + " calls/sec, average latency " + stats.getAverageLatency() + "ms");
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (ProcedureEngine engine : engines) {
+            engine.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return engines[0].getName() + "x" + engines.length;
+    }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.client.ClientStats;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Wraps the engine the benchmark uses so we can see when the load generator
+ * itself is the bottleneck. We record:
+ * <ul>
+ * <li>How long callProcedure blocked for, whatever the reason -
+ * backpressure, a full Client2 request limit or a ConcurrencyLimiter. A call
+ * counts as blocked if it takes longer than blockedThresholdUs to queue.</li>
+ * <li>How many calls are outstanding. This is a real count.</li>
+ * <li>An estimate of how many are outstanding on each connection. The client
+ * doesn't tell us this, so we use Little's law: calls per second * average
+ * latency. It's reported as an estimate, not a count.</li>
+ * <li>When the client library says it's backpressured. If we have several
+ * clients we say how many of them are.</li>
+ * </ul>
+ * Once start has been called a background thread prints this once a second
+ * while calls are in flight, and reportStats prints a summary at the end.
+ *
+ */
+public class InstrumentedEngine implements ProcedureEngine, Runnable {
+
+    public static final String BLOCKED_CALLS = "BLOCKED_CALLS";
+    public static final String BLOCKED_US = "BLOCKED_US";
+    public static final String OUTSTANDING_CALLS = "OUTSTANDING_CALLS";
+    public static final String EST_OUTSTANDING_CALLS_ON = "EST_OUTSTANDING_CALLS_ON_";
+
+    /**
+     * Default for how long a call can take to queue before we say it was held
+     * up by something. Queueing a call that isn't held up only means
+     * serializing it and handing it to a network thread, which takes a few
+     * microseconds, so 100 leaves plenty of room for GC and scheduling noise.
+     */
+    public static final int DEFAULT_BLOCKED_THRESHOLD_US = 100;
+
+    private static final int BLOCKED_HISTOGRAM_SIZE_US = 1000000;
+    private static final int OUTSTANDING_HISTOGRAM_SIZE = 10000;
+    private static final long MONITOR_INTERVAL_MS = 1000;
+
+    ProcedureEngine engine;
+    SafeHistogramCache shc;
+    BackpressureTracker[] backpressure;
+    long blockedThresholdNanos;
+
+    AtomicLong outstanding = new AtomicLong();
+    AtomicLong blockedNanos = new AtomicLong();
+    volatile boolean keepGoing = true;
+    Thread monitorThread;
+
+    /**
+     * @param engine             engine that actually makes the calls
+     * @param shc
+     * @param backpressure       trackers the client libraries report
+     *                           backpressure to, one for each client
+     * @param blockedThresholdUs a call that takes longer than this to queue
+     *                           counts as blocked
+     */
+    public InstrumentedEngine(ProcedureEngine engine, SafeHistogramCache shc,
+            BackpressureTracker[] backpressure, int blockedThresholdUs) {
+        this.engine = engine;
+        this.shc = shc;
+        this.backpressure = backpressure;
+        this.blockedThresholdNanos = blockedThresholdUs * 1000L;
+    }
+
+    /**
+     * Start printing what's going on once a second.
+     */
+    public void start() {
+        monitorThread = new Thread(this, "InstrumentedEngine");
+        monitorThread.setDaemon(true);
+        monitorThread.start();
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... params)
+            throws IOException {
+
+        final long startNanos = System.nanoTime();
+
+        ProcedureCallback countingCallback = response -> {
+            outstanding.decrementAndGet();
+            callback.clientCallback(response);
+        };
+
+        outstanding.incrementAndGet();
+
+        boolean queued = false;
+
+        try {
+            queued = engine.callProcedure(countingCallback, procName, params);
+        } finally {
+
+            if (!queued) {
+                outstanding.decrementAndGet();
+            }
+
+            final long callNanos = System.nanoTime() - startNanos;
+
+            if (callNanos > blockedThresholdNanos) {
+                blockedNanos.addAndGet(callNanos);
+                shc.incCounter(BLOCKED_CALLS);
+                shc.report(BLOCKED_US, (int) (callNanos / 1000), BLOCKED_US, BLOCKED_HISTOGRAM_SIZE_US);
+            }
+        }
+
+        return queued;
+    }
+
+    /**
+     * Once a second record and print how many calls are outstanding, how long
+     * we spent blocked and whether we're backpressured.
+     */
+    @Override
+    public void run() {
+
+        EngineStatsContext connectionStats = engine.createStatsContext();
+        long lastBlockedNanos = 0;
+
+        try {
+            while (keepGoing) {
+
+                Thread.sleep(MONITOR_INTERVAL_MS);
+
+                final long outstandingNow = outstanding.get();
+                final long blockedNanosNow = blockedNanos.get();
+                final TreeMap<String, Long> hostOutstanding = getOutstandingByHost(connectionStats);
+
+                if (outstandingNow == 0 && blockedNanosNow == lastBlockedNanos) {
+                    continue;
+                }
+
+                shc.reportSize(OUTSTANDING_CALLS, (int) outstandingNow, OUTSTANDING_CALLS,
+                        OUTSTANDING_HISTOGRAM_SIZE);
+
+                for (Map.Entry<String, Long> host : hostOutstanding.entrySet()) {
+                    shc.reportSize(EST_OUTSTANDING_CALLS_ON + host.getKey(), host.getValue().intValue(),
+                            EST_OUTSTANDING_CALLS_ON + host.getKey(), OUTSTANDING_HISTOGRAM_SIZE);
+                }
+
+                BaseChargingDemo.msg("Outstanding = " + outstandingNow + ", estimated by host = " + hostOutstanding
+                        + ", blocked = "
+                        + ((blockedNanosNow - lastBlockedNanos) / 1000000) + "ms, backpressured clients = "
+                        + getBackpressuredCount() + "/" + backpressure.length);
+
+                lastBlockedNanos = blockedNanosNow;
+            }
+        } catch (InterruptedException e) {
+            // We're done...
+        } catch (Exception e) {
+            BaseChargingDemo.msg("InstrumentedEngine: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Estimate outstanding calls for each host since we last asked, using
+     * Little's law.
+     *
+     * @param connectionStats
+     * @return estimated outstanding calls by host
+     */
+    private TreeMap<String, Long> getOutstandingByHost(EngineStatsContext connectionStats) {
+
+        TreeMap<String, Long> hostOutstanding = new TreeMap<>();
+
+        for (ClientStats stats : connectionStats.fetchAndResetBaseline().getStatsByConnection()) {
+
+            final long durationMs = Math.max(1, stats.getDuration());
+            final long estimate = (long) ((stats.getInvocationsCompleted() * stats.getAverageLatency())
+                    / durationMs);
+
+            hostOutstanding.merge(stats.getHostname() + ":" + stats.getPort(), estimate, Long::sum);
+        }
+
+        return hostOutstanding;
+    }
+
+    /**
+     * @return how many clients are backpressured right now
+     */
+    private int getBackpressuredCount() {
+
+        int count = 0;
+
+        for (BackpressureTracker tracker : backpressure) {
+            if (tracker.isBackpressured()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return how long each client has been backpressured for, added up
+     */
+    private long getBackpressuredMs() {
+
+        long totalMs = 0;
+
+        for (BackpressureTracker tracker : backpressure) {
+            totalMs += tracker.getTotalMs();
+        }
+
+        return totalMs;
+    }
+
+    @Override
+    public void setPriority(String procName, int priority) {
+        engine.setPriority(procName, priority);
+    }
+
+    @Override
+    public void drain() throws InterruptedException, IOException {
+        engine.drain();
+    }
+
+    @Override
+    public EngineStatsContext createStatsContext() {
+        return engine.createStatsContext();
+    }
+
+    @Override
+    public void reportStats() {
+
+        engine.reportStats();
+
+        BaseChargingDemo.msg("Blocked calls (over " + (blockedThresholdNanos / 1000) + "us to queue) = "
+                + shc.getCounter(BLOCKED_CALLS) + ", time blocked = " + (blockedNanos.get() / 1000000) + "ms");
+        BaseChargingDemo.msg("Backpressure events = " + shc.getCounter(BackpressureTracker.BACKPRESSURE_EVENTS)
+                + ", time backpressured = " + getBackpressuredMs() + "ms, summed over " + backpressure.length
+                + " clients");
+        BaseChargingDemo.msg(shc.getSize(OUTSTANDING_CALLS).toString());
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+
+        keepGoing = false;
+
+        if (monitorThread != null) {
+            monitorThread.interrupt();
+            monitorThread.join();
+        }
+
+        engine.close();
+    }
+
+    @Override
+    public String getName() {
+        return engine.getName();
+    }
+
+}
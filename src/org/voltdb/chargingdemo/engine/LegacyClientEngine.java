@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import java.io.IOException;
+
+import org.voltdb.client.Client;
+import org.voltdb.client.NoConnectionsException;
+import org.voltdb.client.ProcedureCallback;
+
+/**
+ * Sends calls through the original Client API, which is what the benchmarks
+ * have always done. When the client is backpressured callProcedure blocks.
+ * Priorities aren't supported.
+ *
+ */
+public class LegacyClientEngine implements ProcedureEngine {
+
+    public static final String NAME = "LEGACY";
+
+    Client client;
+    boolean closeClient;
+
+    /**
+     * @param client an already connected client, which we don't close
+     */
+    public LegacyClientEngine(Client client) {
+        this(client, false);
+    }
+
+    /**
+     * @param client      an already connected client
+     * @param closeClient true if close() should close client
+     */
+    public LegacyClientEngine(Client client, boolean closeClient) {
+        this.client = client;
+        this.closeClient = closeClient;
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... params)
+            throws IOException, NoConnectionsException {
+        return client.callProcedure(callback, procName, params);
+    }
+
+    @Override
+    public void setPriority(String procName, int priority) {
+        // Not supported by Client...
+    }
+
+    @Override
+    public void drain() throws InterruptedException, NoConnectionsException {
+        client.drain();
+    }
+
+    @Override
+    public EngineStatsContext createStatsContext() {
+        return new EngineStatsContext(client.createStatsContext());
+    }
+
+    @Override
+    public void reportStats() {
+        // Nothing extra to say...
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (closeClient) {
+            client.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import java.io.IOException;
+
+import org.voltdb.client.ProcedureCallback;
+
+/**
+ * Something the benchmarks can send their asynchronous calls through. This
+ * lets runTransactionBenchmark and runKVBenchmark use the same workload with
+ * different client APIs, so we can compare them.
+ *
+ * Setup, reporting and other synchronous calls still use the main Client.
+ *
+ */
+public interface ProcedureEngine {
+
+    /**
+     * Highest request priority. Only makes a difference if priorities are
+     * enabled in the deployment file.
+     */
+    public static final int PRIORITY_HIGHEST = 1;
+    public static final int PRIORITY_DEFAULT = 4;
+    public static final int PRIORITY_LOWEST = 8;
+
+    /**
+     * Call a procedure asynchronously, the same way Client.callProcedure does.
+     *
+     * @param callback called when we hear back, even if the call failed
+     * @param procName
+     * @param params
+     * @return true if the call was queued
+     * @throws IOException
+     */
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... params) throws IOException;
+
+    /**
+     * Set the priority for calls to a procedure, if the engine supports it.
+     *
+     * @param procName
+     * @param priority PRIORITY_HIGHEST to PRIORITY_LOWEST
+     */
+    public void setPriority(String procName, int priority);
+
+    /**
+     * Wait until every call we've made has had its callback called.
+     *
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    public void drain() throws InterruptedException, IOException;
+
+    /**
+     * @return a stats context for the connections this engine uses
+     */
+    public EngineStatsContext createStatsContext();
+
+    /**
+     * Print anything we know about the run that the client stats don't show.
+     */
+    public void reportStats();
+
+    /**
+     * Close any connections this engine made itself.
+     *
+     * @throws InterruptedException
+     */
+    public void close() throws InterruptedException;
+
+    /**
+     * @return name of this engine, for reports
+     */
+    public String getName();
+
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.engine;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+import chargingdemoprocs.ReferenceData;
+
+/**
+ * Resends calls that time out or fail in a way that means we don't know
+ * whether they happened. We resend exactly the same parameters, including the
+ * txnId, so if the first attempt did happen the procedure spots it and
+ * returns STATUS_TXN_ALREADY_HAPPENED instead of doing it twice.
+ * <p>
+ * Only procedures in 'retryableProcs' are retried, as they're the ones that
+ * check txnIds. Everything else goes straight through.
+ * <p>
+ * Each attempt gets 'timeoutMs'. After a failed attempt we wait 'backoffMs',
+ * doubling each time up to MAX_BACKOFF_MS, and give up after 'maxRetries'
+ * retries. The callback is called once, with the first response that isn't a
+ * retryable failure, or the last failure if we gave up. Responses to earlier
+ * attempts that turn up later are counted and thrown away.
+ * <p>
+ * Resends are made from their own thread, as callProcedure can block on
+ * backpressure and we don't want that to stop timeouts firing.
+ *
+ */
+public class RetryingEngine implements ProcedureEngine {
+
+    public static final String RETRY_CALLS = "RETRY_CALLS";
+    public static final String RETRY_RESENDS = "RETRY_RESENDS";
+    public static final String RETRY_TIMEOUTS = "RETRY_TIMEOUTS";
+    public static final String RETRY_FAILURES = "RETRY_FAILURES";
+    public static final String RETRY_GAVE_UP = "RETRY_GAVE_UP";
+    public static final String RETRY_DUPLICATES = "RETRY_DUPLICATES";
+    public static final String RETRY_LATE_RESPONSES = "RETRY_LATE_RESPONSES";
+    public static final String RETRY_END_TO_END = "RETRY_END_TO_END";
+    public static final String RETRY_ATTEMPTS_PER_CALL = "RETRY_ATTEMPTS_PER_CALL";
+
+    public static final int DEFAULT_TIMEOUT_MS = 1000;
+    public static final int DEFAULT_BACKOFF_MS = 10;
+    public static final long MAX_BACKOFF_MS = 1000;
+
+    private static final int ATTEMPTS_HISTOGRAM_SIZE = 100;
+
+    /**
+     * One logical call, which may be sent several times.
+     */
+    private class RetryingCall {
+
+        ProcedureCallback callback;
+        String procName;
+        Object[] params;
+        final long startMs = System.currentTimeMillis();
+
+        int attempt = 0;
+        boolean done = false;
+
+        /**
+         * True while we wait to send the next attempt, so that the timeout and
+         * a late failure for the same attempt don't both schedule a resend.
+         */
+        boolean resendPending = false;
+        ScheduledFuture<?> timeout = null;
+
+        RetryingCall(ProcedureCallback callback, String procName, Object[] params) {
+            this.callback = callback;
+            this.procName = procName;
+            this.params = params;
+        }
+
+        /**
+         * Send another attempt.
+         *
+         * @return false if it couldn't be queued
+         * @throws IOException
+         */
+        boolean send() throws IOException {
+
+            final int thisAttempt;
+
+            synchronized (this) {
+
+                if (done) {
+                    return true;
+                }
+
+                resendPending = false;
+                thisAttempt = ++attempt;
+                timeout = scheduler.schedule(() -> failed(thisAttempt, null), timeoutMs, TimeUnit.MILLISECONDS);
+            }
+
+            return engine.callProcedure(response -> responded(thisAttempt, response), procName, params);
+        }
+
+        /**
+         * Send another attempt from our resend thread, where nobody is waiting
+         * to be told it didn't work.
+         */
+        void resend() {
+
+            try {
+                if (!send()) {
+                    failed(attempt, null);
+                }
+            } catch (IOException e) {
+                failed(attempt, null);
+            }
+        }
+
+        /**
+         * We've heard back from an attempt.
+         *
+         * @param thisAttempt
+         * @param response
+         */
+        void responded(int thisAttempt, ClientResponse response) {
+
+            if (response.getStatus() == ClientResponse.SUCCESS
+                    && response.getAppStatus() == ReferenceData.STATUS_TXN_ALREADY_HAPPENED) {
+                shc.incCounter(RETRY_DUPLICATES);
+            }
+
+            if (isRetryable(response)) {
+                failed(thisAttempt, response);
+                return;
+            }
+
+            synchronized (this) {
+
+                if (done) {
+                    shc.incCounter(RETRY_LATE_RESPONSES);
+                    return;
+                }
+
+                finish();
+            }
+
+            deliver(response);
+        }
+
+        /**
+         * An attempt timed out or failed, so try again or give up.
+         *
+         * @param thisAttempt
+         * @param response    null if it timed out
+         */
+        void failed(int thisAttempt, ClientResponse response) {
+
+            synchronized (this) {
+
+                if (done) {
+                    if (response != null) {
+                        shc.incCounter(RETRY_LATE_RESPONSES);
+                    }
+                    return;
+                }
+
+                // Only the latest attempt counts, the one before has already
+                // been given up on...
+                if (thisAttempt != attempt || resendPending) {
+                    return;
+                }
+
+                shc.incCounter(response == null ? RETRY_TIMEOUTS : RETRY_FAILURES);
+
+                if (attempt <= maxRetries) {
+
+                    timeout.cancel(false);
+
+                    final long backoffMs = Math.min(MAX_BACKOFF_MS, initialBackoffMs << Math.min(attempt - 1, 30));
+
+                    shc.incCounter(RETRY_RESENDS);
+                    resendPending = true;
+                    scheduler.schedule(() -> resender.execute(this::resend), backoffMs, TimeUnit.MILLISECONDS);
+                    return;
+                }
+
+                shc.incCounter(RETRY_GAVE_UP);
+                finish();
+            }
+
+            if (response == null) {
+                response = new ClientResponseImpl(ClientResponse.CONNECTION_TIMEOUT, new VoltTable[0],
+                        "Gave up on " + procName + " after " + attempt + " attempts");
+            }
+
+            deliver(response);
+        }
+
+        /**
+         * Mark the call as done. Caller must hold our lock.
+         */
+        private void finish() {
+
+            done = true;
+
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+
+            shc.reportLatency(RETRY_END_TO_END, startMs, RETRY_END_TO_END, BaseChargingDemo.HISTOGRAM_SIZE_MS);
+            shc.reportSize(RETRY_ATTEMPTS_PER_CALL, attempt, RETRY_ATTEMPTS_PER_CALL, ATTEMPTS_HISTOGRAM_SIZE);
+        }
+
+        private void deliver(ClientResponse response) {
+
+            try {
+                callback.clientCallback(response);
+            } catch (Exception e) {
+                BaseChargingDemo.msg("RetryingEngine: " + e.getMessage());
+            } finally {
+                callFinished();
+            }
+        }
+    }
+
+    ProcedureEngine engine;
+    SafeHistogramCache shc;
+    Set<String> retryableProcs;
+    int maxRetries;
+    long timeoutMs;
+    long initialBackoffMs;
+
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+    ExecutorService resender = Executors.newSingleThreadExecutor();
+    long pendingCalls = 0;
+
+    /**
+     * @param engine           engine that actually makes the calls
+     * @param shc
+     * @param retryableProcs   procedures that check txnIds and can be resent
+     * @param maxRetries       most times we resend a call
+     * @param timeoutMs        how long we give each attempt
+     * @param initialBackoffMs how long we wait before the first resend
+     */
+    public RetryingEngine(ProcedureEngine engine, SafeHistogramCache shc, Set<String> retryableProcs,
+            int maxRetries, long timeoutMs, long initialBackoffMs) {
+
+        this.engine = engine;
+        this.shc = shc;
+        this.retryableProcs = retryableProcs;
+        this.maxRetries = maxRetries;
+        this.timeoutMs = timeoutMs;
+        this.initialBackoffMs = Math.max(1, initialBackoffMs);
+
+        // Most timeouts get cancelled, so don't leave them lying around...
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... params)
+            throws IOException {
+
+        if (!retryableProcs.contains(procName)) {
+            return engine.callProcedure(callback, procName, params);
+        }
+
+        shc.incCounter(RETRY_CALLS);
+        callStarted();
+
+        RetryingCall call = new RetryingCall(callback, procName, params);
+
+        boolean queued = false;
+
+        try {
+            queued = call.send();
+        } finally {
+            if (!queued) {
+                synchronized (call) {
+                    call.done = true;
+                    call.timeout.cancel(false);
+                }
+                callFinished();
+            }
+        }
+
+        return queued;
+    }
+
+    /**
+     * @param response
+     * @return true if we can't tell whether the call happened
+     */
+    private static boolean isRetryable(ClientResponse response) {
+
+        switch (response.getStatus()) {
+        case ClientResponse.CONNECTION_LOST:
+        case ClientResponse.CONNECTION_TIMEOUT:
+        case ClientResponse.RESPONSE_UNKNOWN:
+        case ClientResponse.SERVER_UNAVAILABLE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private synchronized void callStarted() {
+        pendingCalls++;
+    }
+
+    private synchronized void callFinished() {
+        pendingCalls--;
+        notifyAll();
+    }
+
+    @Override
+    public void setPriority(String procName, int priority) {
+        engine.setPriority(procName, priority);
+    }
+
+    /**
+     * Wait for every call, including ones waiting to be resent.
+     */
+    @Override
+    public void drain() throws InterruptedException, IOException {
+
+        synchronized (this) {
+            while (pendingCalls > 0) {
+                wait();
+            }
+        }
+
+        engine.drain();
+    }
+
+    @Override
+    public EngineStatsContext createStatsContext() {
+        return engine.createStatsContext();
+    }
+
+    @Override
+    public void reportStats() {
+
+        engine.reportStats();
+
+        BaseChargingDemo.msg("Retry: max retries = " + maxRetries + ", timeout = " + timeoutMs + "ms, backoff = "
+                + initialBackoffMs + "ms");
+        BaseChargingDemo.msg("Retry: calls = " + shc.getCounter(RETRY_CALLS) + ", resends = "
+                + shc.getCounter(RETRY_RESENDS) + ", timeouts = " + shc.getCounter(RETRY_TIMEOUTS) + ", failures = "
+                + shc.getCounter(RETRY_FAILURES) + ", gave up = " + shc.getCounter(RETRY_GAVE_UP));
+        BaseChargingDemo.msg("Retry: duplicates detected = " + shc.getCounter(RETRY_DUPLICATES)
+                + ", late responses ignored = " + shc.getCounter(RETRY_LATE_RESPONSES));
+        BaseChargingDemo.msg(shc.get(RETRY_END_TO_END).toString());
+        BaseChargingDemo.msg(shc.getSize(RETRY_ATTEMPTS_PER_CALL).toString());
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdownNow();
+        resender.shutdownNow();
+        engine.close();
+    }
+
+    @Override
+    public String getName() {
+        return engine.getName();
+    }
+
+}
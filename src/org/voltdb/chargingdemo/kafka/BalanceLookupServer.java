@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Lets other processes - dashboards, care agent tools and so on - read
+ * balances from a UserBalanceReadModel instead of calling GetUser. It uses the
+ * HTTP server that comes with the JDK, so it needs nothing extra:
+ * <p>
+ * GET /balance?userid=42
+ * <p>
+ * returns "42,1234" as text, or 404 if we've never seen the user. Balances are
+ * only as fresh as the last event the consumer applied.
+ *
+ */
+public class BalanceLookupServer {
+
+    public static final String READ_MODEL_REMOTE_LOOKUP = "READ_MODEL_REMOTE_LOOKUP";
+    public static final String READ_MODEL_REMOTE_LOOKUPS = "READ_MODEL_REMOTE_LOOKUPS";
+
+    public static final String BALANCE_PATH = "/balance";
+
+    private static final String USERID_PARAM = "userid=";
+
+    private static final int THREADS = 4;
+
+    private static final int LOOKUP_HISTOGRAM_SIZE_US = 100000;
+
+    UserBalanceReadModel model;
+    SafeHistogramCache shc;
+    HttpServer server;
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    /**
+     * @param model balances we serve
+     * @param shc
+     * @param port  port we listen on
+     * @throws IOException
+     */
+    public BalanceLookupServer(UserBalanceReadModel model, SafeHistogramCache shc, int port) throws IOException {
+
+        this.model = model;
+        this.shc = shc;
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(BALANCE_PATH, this::lookup);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Start answering requests.
+     */
+    public void start() {
+        server.start();
+        KafkaCreditDemo.msg("Serving balances at http://<this host>:" + server.getAddress().getPort() + BALANCE_PATH
+                + "?userid=<userid>");
+    }
+
+    /**
+     * Answer one request.
+     *
+     * @param exchange
+     * @throws IOException
+     */
+    private void lookup(HttpExchange exchange) throws IOException {
+
+        final long startNanos = System.nanoTime();
+
+        int status = 200;
+        String body;
+
+        final String query = exchange.getRequestURI().getQuery();
+        final long userId = getUserId(query);
+
+        if (userId < 0 || userId > Integer.MAX_VALUE) {
+            status = 400;
+            body = "Usage: " + BALANCE_PATH + "?userid=<userid>\n";
+        } else {
+
+            final long balance = model.getBalance((int) userId);
+
+            if (balance == UserBalanceReadModel.UNKNOWN_BALANCE) {
+                status = 404;
+                body = "User " + userId + " not found\n";
+            } else {
+                body = userId + "," + balance + "\n";
+            }
+        }
+
+        final byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bodyBytes.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bodyBytes);
+        }
+
+        shc.incCounter(READ_MODEL_REMOTE_LOOKUPS);
+        shc.reportLatencyMicros(READ_MODEL_REMOTE_LOOKUP, startNanos / 1000, READ_MODEL_REMOTE_LOOKUP,
+                LOOKUP_HISTOGRAM_SIZE_US, 1);
+    }
+
+    /**
+     * @param query e.g. "userid=42"
+     * @return the userid, or -1 if there isn't a valid one
+     */
+    static long getUserId(String query) {
+
+        if (query == null || !query.startsWith(USERID_PARAM)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(query.substring(USERID_PARAM.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Stop answering requests.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+}
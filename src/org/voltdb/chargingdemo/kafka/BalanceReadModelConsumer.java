@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Keeps a UserBalanceReadModel up to date by reading USER_FINANCIAL_EVENTS, so
+ * balances can be looked up without calling GetUser. As user_balance is just
+ * the sum of user_financial_events, adding up every event gives the same
+ * answer as VoltDB, as long as we start from a snapshot or the topic still has
+ * every event since the users were created. When we start we check whether
+ * the topic has already thrown away events we need, and say so if it has.
+ *
+ * If 'httpport' is given a BalanceLookupServer lets other processes look up
+ * balances over HTTP.
+ *
+ * Once a second we report how many events we applied, how stale our balances
+ * are, how long a sample of lookups took and how many lookups other processes
+ * made. Every 'snapshotseconds' we write a snapshot, which we start from next
+ * time.
+ *
+ */
+public class BalanceReadModelConsumer {
+
+    public static final String READ_MODEL_STALENESS = "READ_MODEL_STALENESS";
+    public static final String READ_MODEL_LOOKUP = "READ_MODEL_LOOKUP";
+    public static final String READ_MODEL_EVENTS = "READ_MODEL_EVENTS";
+    public static final String READ_MODEL_BAD_EVENTS = "READ_MODEL_BAD_EVENTS";
+
+    /**
+     * How many random lookups we time each second
+     */
+    private static final int LOOKUPS_PER_SECOND = 1000;
+
+    private static final int DEFAULT_SNAPSHOT_SECONDS = 60;
+
+    private static final int LOOKUP_HISTOGRAM_SIZE_NS = 100000;
+
+    private static final long POLL_MS = 100;
+
+    public static void main(String[] args) throws UnknownHostException {
+
+        KafkaCreditDemo.msg("Parameters:" + Arrays.toString(args));
+
+        if (args.length < 3 || args.length > 5) {
+            KafkaCreditDemo
+                    .msg("Usage: kafkaserverplusport durationseconds snapshotfile [snapshotseconds] [httpport]");
+            System.exit(1);
+        }
+
+        String kafkaserverplusport = args[0];
+        File snapshotFile = new File(args[2]);
+        int durationseconds = 0;
+        int snapshotSeconds = DEFAULT_SNAPSHOT_SECONDS;
+        int httpPort = 0;
+
+        try {
+            durationseconds = Integer.parseInt(args[1]);
+
+            if (args.length >= 4) {
+                snapshotSeconds = Integer.parseInt(args[3]);
+            }
+
+            if (args.length == 5) {
+                httpPort = Integer.parseInt(args[4]);
+            }
+        } catch (NumberFormatException e) {
+            KafkaCreditDemo.msg("Value should be a number:" + e.getMessage());
+            System.exit(1);
+        }
+
+        UserBalanceReadModel model = new UserBalanceReadModel();
+
+        if (snapshotFile.exists()) {
+            try {
+                final long loadStartMs = System.currentTimeMillis();
+                model.load(snapshotFile);
+                KafkaCreditDemo.msg("Loaded " + model.getUserCount() + " balances from " + snapshotFile + " in "
+                        + (System.currentTimeMillis() - loadStartMs) + "ms");
+            } catch (IOException e) {
+                KafkaCreditDemo.msg("Unable to load " + snapshotFile + ", starting from scratch: " + e.getMessage());
+                model = new UserBalanceReadModel();
+            }
+        }
+
+        Properties config = new Properties();
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, InetAddress.getLocalHost().getHostName());
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaserverplusport);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        SafeHistogramCache shc = SafeHistogramCache.getInstance();
+        Random r = new Random();
+
+        final long startMs = System.currentTimeMillis();
+        final long endtimeMs = startMs + (1000 * durationseconds);
+
+        long nextReportMs = startMs + 1000;
+        long nextSnapshotMs = startMs + (1000 * snapshotSeconds);
+        long eventsThisSecond = 0;
+        long lastEventTimestamp = 0;
+        long lastRemoteLookups = 0;
+
+        BalanceLookupServer lookupServer = null;
+
+        if (httpPort > 0) {
+            try {
+                lookupServer = new BalanceLookupServer(model, shc, httpPort);
+                lookupServer.start();
+            } catch (IOException e) {
+                KafkaCreditDemo.msg("Unable to serve balances on port " + httpPort + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(config)) {
+
+            // We keep track of offsets ourselves, so we don't need a group...
+            List<TopicPartition> partitions = new ArrayList<>();
+
+            for (PartitionInfo partitionInfo : consumer
+                    .partitionsFor(KafkaLatencyConsumer.USER_FINANCIAL_EVENTS_TOPIC)) {
+                partitions.add(new TopicPartition(partitionInfo.topic(), partitionInfo.partition()));
+            }
+
+            consumer.assign(partitions);
+
+            // Retention may have removed events we haven't applied yet...
+            Map<TopicPartition, Long> earliestOffsets = consumer.beginningOffsets(partitions);
+            long missingEvents = 0;
+
+            for (TopicPartition partition : partitions) {
+
+                final long nextOffset = Math.max(0, model.getNextOffset(partition.partition()));
+                final long earliestOffset = earliestOffsets.get(partition);
+
+                if (earliestOffset > nextOffset) {
+                    missingEvents += earliestOffset - nextOffset;
+                }
+
+                consumer.seek(partition, Math.max(nextOffset, earliestOffset));
+            }
+
+            if (missingEvents > 0) {
+                KafkaCreditDemo.msg("WARNING: " + missingEvents + " events we need have already been removed from "
+                        + KafkaLatencyConsumer.USER_FINANCIAL_EVENTS_TOPIC
+                        + " by its retention policy, so balances will be incomplete. Start from a more recent "
+                        + "snapshot, or increase the topic's retention.");
+            } else {
+                KafkaCreditDemo.msg("Every event we need is still in "
+                        + KafkaLatencyConsumer.USER_FINANCIAL_EVENTS_TOPIC + ", so balances will be complete");
+            }
+
+            while (endtimeMs > System.currentTimeMillis()) {
+
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(POLL_MS));
+
+                for (ConsumerRecord<String, String> record : records) {
+
+                    final long userId = getLongField(record.value(), 0);
+                    final long amount = getLongField(record.value(), 1);
+
+                    if (userId < 0 || userId > Integer.MAX_VALUE || amount == Long.MIN_VALUE) {
+                        shc.incCounter(READ_MODEL_BAD_EVENTS);
+                    } else {
+                        model.apply((int) userId, amount);
+                    }
+
+                    model.setNextOffset(record.partition(), record.offset() + 1);
+                    lastEventTimestamp = Math.max(lastEventTimestamp, record.timestamp());
+                    eventsThisSecond++;
+                }
+
+                final long nowMs = System.currentTimeMillis();
+
+                if (records.count() > 0) {
+                    shc.reportLatency(READ_MODEL_STALENESS, lastEventTimestamp, READ_MODEL_STALENESS,
+                            BaseChargingDemo.HISTOGRAM_SIZE_MS);
+                }
+
+                if (nowMs >= nextReportMs) {
+
+                    timeLookups(model, shc, r);
+
+                    final long remoteLookups = shc.getCounter(BalanceLookupServer.READ_MODEL_REMOTE_LOOKUPS);
+
+                    shc.incCounter(READ_MODEL_EVENTS, (int) eventsThisSecond);
+                    KafkaCreditDemo.msg("Applied " + eventsThisSecond + " events/sec, " + model.getUserCount()
+                            + " users, newest event is "
+                            + (lastEventTimestamp == 0 ? "n/a" : (nowMs - lastEventTimestamp) + "ms old")
+                            + ", served " + (remoteLookups - lastRemoteLookups) + " lookups/sec");
+
+                    nextReportMs += 1000;
+                    eventsThisSecond = 0;
+                    lastRemoteLookups = remoteLookups;
+                }
+
+                if (nowMs >= nextSnapshotMs) {
+                    saveSnapshot(model, snapshotFile);
+                    nextSnapshotMs = nowMs + (1000 * snapshotSeconds);
+                }
+            }
+        }
+
+        if (lookupServer != null) {
+            lookupServer.stop();
+        }
+
+        saveSnapshot(model, snapshotFile);
+
+        KafkaCreditDemo.msg(shc.getCounter(READ_MODEL_EVENTS) + " events applied, "
+                + shc.getCounter(READ_MODEL_BAD_EVENTS) + " events we couldn't understand");
+        KafkaCreditDemo.msg(shc.get(READ_MODEL_STALENESS).toString());
+        KafkaCreditDemo.msg(shc.get(READ_MODEL_LOOKUP).toString());
+
+        if (lookupServer != null) {
+            KafkaCreditDemo.msg(shc.getCounter(BalanceLookupServer.READ_MODEL_REMOTE_LOOKUPS) + " lookups served");
+            KafkaCreditDemo.msg(shc.get(BalanceLookupServer.READ_MODEL_REMOTE_LOOKUP).toString());
+        }
+
+    }
+
+    /**
+     * Look up some random users, to see how long it takes.
+     *
+     * @param model
+     * @param shc
+     * @param r
+     */
+    private static void timeLookups(UserBalanceReadModel model, SafeHistogramCache shc, Random r) {
+
+        final int userCount = model.getUserCount();
+
+        if (userCount == 0) {
+            return;
+        }
+
+        for (int i = 0; i < LOOKUPS_PER_SECOND; i++) {
+
+            final int userId = r.nextInt(userCount);
+            final long startNanos = System.nanoTime();
+
+            model.getBalance(userId);
+            shc.reportLatencyNanos(READ_MODEL_LOOKUP, startNanos, READ_MODEL_LOOKUP, LOOKUP_HISTOGRAM_SIZE_NS, 1);
+        }
+    }
+
+    /**
+     * Write a snapshot, logging how big it was and how long it took.
+     *
+     * @param model
+     * @param snapshotFile
+     */
+    private static void saveSnapshot(UserBalanceReadModel model, File snapshotFile) {
+
+        try {
+            final long startMs = System.currentTimeMillis();
+            final long bytes = model.save(snapshotFile);
+            KafkaCreditDemo.msg("Wrote " + bytes + " byte snapshot of " + model.getUserCount() + " balances to "
+                    + snapshotFile + " in " + (System.currentTimeMillis() - startMs) + "ms");
+        } catch (IOException e) {
+            KafkaCreditDemo.msg("Unable to write " + snapshotFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get a number from an exported user_financial_events row without splitting
+     * it up.
+     *
+     * @param value CSV row - userid, amount, user_txn_id, message
+     * @param field which field we want
+     * @return the number, or Long.MIN_VALUE if it isn't one
+     */
+    static long getLongField(String value, int field) {
+
+        if (value == null) {
+            return Long.MIN_VALUE;
+        }
+
+        int pos = 0;
+
+        for (int i = 0; i < field; i++) {
+
+            pos = value.indexOf(',', pos) + 1;
+
+            if (pos == 0) {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        boolean negative = false;
+        boolean sawDigit = false;
+        long number = 0;
+
+        for (; pos < value.length(); pos++) {
+
+            final char c = value.charAt(pos);
+
+            if (c >= '0' && c <= '9') {
+                number = (number * 10) + (c - '0');
+                sawDigit = true;
+            } else if (c == '-' && !sawDigit) {
+                negative = true;
+            } else if (c == ',') {
+                break;
+            } else if (c != '"' && c != ' ') {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        if (!sawDigit) {
+            return Long.MIN_VALUE;
+        }
+
+        return negative ? -number : number;
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.voltdb.VoltType;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientImpl;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+import chargingdemoformatter.BinaryCreditRecord;
+import chargingdemoprocs.CompactResponse;
+
+/**
+ * Sends random credits to Kafka at 'tpms' credits per millisecond, either one
+ * per record to ADDCREDIT (as CSV) or ADDCREDIT_BINARY (as BinaryCreditRecord),
+ * or grouped by VoltDB partition to ADDCREDIT_BATCH. We can also call AddCredit
+ * directly, one credit at a time.
+ *
+ */
+public class CreditProducer extends PacedProducer {
+
+    public static final String ADDCREDIT_TOPIC = "ADDCREDIT";
+    public static final String ADDCREDIT_BATCH_TOPIC = "ADDCREDIT_BATCH";
+    public static final String ADDCREDIT_BINARY_TOPIC = "ADDCREDIT_BINARY";
+
+    private static final char QUOTE = '"';
+    private static final String QUOTE_COMMA_QUOTE = "\",\"";
+
+    /**
+     * Credits for one VoltDB partition that haven't been sent yet.
+     */
+    private static class PartitionBatch {
+
+        long partitionUserId = Long.MIN_VALUE;
+        StringBuilder credits = new StringBuilder();
+        int creditCount = 0;
+
+        void add(int userId, int amount, String txnId) {
+
+            if (creditCount == 0) {
+                partitionUserId = userId;
+            } else {
+                credits.append(';');
+            }
+
+            credits.append(userId);
+            credits.append(':');
+            credits.append(amount);
+            credits.append(':');
+            credits.append(txnId);
+            creditCount++;
+        }
+
+        /**
+         * @return CSV record for AddCreditBatch - partitionUserId, credits,
+         *         wantBalances
+         */
+        String toRequest() {
+            return QUOTE + "" + partitionUserId + QUOTE_COMMA_QUOTE + credits.toString() + QUOTE_COMMA_QUOTE + "0"
+                    + QUOTE;
+        }
+
+        void clear() {
+            partitionUserId = Long.MIN_VALUE;
+            credits.setLength(0);
+            creditCount = 0;
+        }
+    }
+
+    ClientImpl partitioningClient;
+    int recordCount;
+    int maxamount;
+    int batchSize;
+    boolean binaryFormat;
+
+    StringBuilder request = new StringBuilder();
+    HashMap<Long, PartitionBatch> batches = new HashMap<>();
+
+    /**
+     * KafkaProducer copies a record's bytes into its own buffers before send()
+     * returns, so we can use the same array for every binary record.
+     */
+    byte[] binaryRecord = new byte[BinaryCreditRecord.RECORD_LENGTH];
+    ByteBuffer binaryBuffer = ByteBuffer.wrap(binaryRecord);
+
+    /**
+     * @param producer           shared KafkaProducer, or a MockProducer of our
+     *                           own, or null if we're calling VoltDB directly
+     * @param directClient       VoltDB client to call AddCredit with, or null
+     * @param shc
+     * @param partitioningClient VoltDB client used to find out which partition a
+     *                           user is in, or null if we're not batching
+     * @param threadId           used to keep txnIds unique
+     * @param recordCount        how many users there are
+     * @param tpms               credits per millisecond for this thread
+     * @param endtimeMs          when to stop
+     * @param maxamount          largest credit
+     * @param batchSize          credits per ADDCREDIT_BATCH record
+     * @param binaryFormat       true if we send BinaryCreditRecords instead of
+     *                           CSV
+     */
+    public CreditProducer(Producer<String, byte[]> producer, Client directClient, SafeHistogramCache shc,
+            ClientImpl partitioningClient, int threadId, int recordCount, int tpms, long endtimeMs, int maxamount,
+            int batchSize, boolean binaryFormat) {
+        super(producer, directClient, shc, threadId, tpms, endtimeMs);
+        this.partitioningClient = partitioningClient;
+        this.recordCount = recordCount;
+        this.maxamount = maxamount;
+        this.batchSize = batchSize;
+        this.binaryFormat = binaryFormat;
+    }
+
+    @Override
+    protected void sendNext(long count, long sentMs) {
+
+        int userId = r.nextInt(recordCount);
+        int amount = r.nextInt(maxamount);
+
+        if (directClient != null) {
+            callDirect("AddCredit", userId, amount, BinaryCreditRecord.getTxnId(threadId, count, sentMs));
+        } else if (binaryFormat) {
+            sendBinaryCredit(userId, amount, count, sentMs);
+        } else if (partitioningClient == null) {
+            sendCredit(userId, amount, BinaryCreditRecord.getTxnId(threadId, count, sentMs));
+        } else {
+
+            final long partitionId = partitioningClient.getPartitionForParameter(VoltType.BIGINT.getValue(),
+                    (long) userId);
+
+            PartitionBatch batch = batches.get(partitionId);
+
+            if (batch == null) {
+                batch = new PartitionBatch();
+                batches.put(partitionId, batch);
+            }
+
+            batch.add(userId, amount, BinaryCreditRecord.getTxnId(threadId, count, sentMs));
+
+            if (batch.creditCount >= batchSize) {
+                sendBatch(partitionId, batch);
+            }
+        }
+    }
+
+    @Override
+    protected void finish() {
+
+        // Send any partially filled batches...
+        for (Long partitionId : batches.keySet()) {
+            if (batches.get(partitionId).creditCount > 0) {
+                sendBatch(partitionId, batches.get(partitionId));
+            }
+        }
+    }
+
+    /**
+     * Send a single credit to the ADDCREDIT topic, as the three fields
+     * AddCredit takes.
+     *
+     * @param userId
+     * @param amount
+     * @param txnId
+     */
+    private void sendCredit(int userId, int amount, String txnId) {
+
+        request.setLength(0);
+        request.append(QUOTE);
+        request.append(userId);
+        request.append(QUOTE_COMMA_QUOTE);
+        request.append(amount);
+        request.append(QUOTE_COMMA_QUOTE);
+        request.append(txnId);
+        request.append(QUOTE);
+
+        final byte[] value = request.toString().getBytes(StandardCharsets.UTF_8);
+
+        ProducerRecord<String, byte[]> newrec = new ProducerRecord<>(ADDCREDIT_TOPIC, txnId, value);
+
+        producer.send(newrec, new SendAckCallback(shc, 1));
+        shc.incCounter(KAFKA_SENT_CREDITS);
+        shc.incCounter(KAFKA_SENT_RECORDS);
+        shc.incCounter(KAFKA_SENT_BYTES, value.length);
+    }
+
+    /**
+     * Send a single credit to the ADDCREDIT_BINARY topic as a
+     * BinaryCreditRecord. We don't set a key, so Kafka spreads records across
+     * its partitions.
+     *
+     * @param userId
+     * @param amount
+     * @param count
+     * @param sentMs
+     */
+    private void sendBinaryCredit(int userId, int amount, long count, long sentMs) {
+
+        // Nobody reads the response, so ask for the smallest one...
+        BinaryCreditRecord.encode(binaryBuffer, userId, amount, threadId, count, sentMs,
+                CompactResponse.RESPONSE_MODE_COMPACT);
+
+        ProducerRecord<String, byte[]> newrec = new ProducerRecord<>(ADDCREDIT_BINARY_TOPIC, binaryRecord);
+
+        producer.send(newrec, new SendAckCallback(shc, 1));
+        shc.incCounter(KAFKA_SENT_CREDITS);
+        shc.incCounter(KAFKA_SENT_RECORDS);
+        shc.incCounter(KAFKA_SENT_BYTES, binaryRecord.length);
+    }
+
+    /**
+     * Send a batch to the ADDCREDIT_BATCH topic. We use the VoltDB partition id
+     * as the key so all of a VoltDB partition's records end up in the same Kafka
+     * partition.
+     *
+     * @param partitionId
+     * @param batch
+     */
+    private void sendBatch(long partitionId, PartitionBatch batch) {
+
+        final int creditCount = batch.creditCount;
+
+        final byte[] value = batch.toRequest().getBytes(StandardCharsets.UTF_8);
+
+        ProducerRecord<String, byte[]> newrec = new ProducerRecord<>(ADDCREDIT_BATCH_TOPIC, "" + partitionId, value);
+        batch.clear();
+
+        producer.send(newrec, new SendAckCallback(shc, creditCount));
+        shc.incCounter(KAFKA_SENT_CREDITS, creditCount);
+        shc.incCounter(KAFKA_SENT_RECORDS);
+        shc.incCounter(KAFKA_SENT_BYTES, value.length);
+    }
+
+}
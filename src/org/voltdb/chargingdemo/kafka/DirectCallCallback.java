@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Called when VoltDB finishes a call KafkaCreditDemo made directly instead of
+ * going through Kafka. We use the same counters and histogram as
+ * SendAckCallback, so the two can be compared, but here 'acked' means VoltDB
+ * has done the work.
+ *
+ */
+public class DirectCallCallback implements ProcedureCallback {
+
+    SafeHistogramCache shc;
+    final long startMs = System.currentTimeMillis();
+
+    /**
+     * @param shc
+     */
+    public DirectCallCallback(SafeHistogramCache shc) {
+        this.shc = shc;
+    }
+
+    @Override
+    public void clientCallback(ClientResponse arg0) throws Exception {
+
+        if (arg0.getStatus() == ClientResponse.SUCCESS) {
+            shc.reportLatency(PacedProducer.KAFKA_SEND_ACK, startMs, PacedProducer.KAFKA_SEND_ACK,
+                    BaseChargingDemo.HISTOGRAM_SIZE_MS);
+            shc.incCounter(PacedProducer.KAFKA_ACKED_CREDITS);
+        } else {
+            shc.incCounter(PacedProducer.KAFKA_FAILED_CREDITS);
+
+            if (shc.getCounter(PacedProducer.KAFKA_FAILED_CREDITS) <= 1) {
+                KafkaCreditDemo.msg("DirectCallCallback: " + arg0.getStatusString());
+            }
+        }
+    }
+
+}
@@ -14,26 +14,77 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Properties;
-import java.util.Random;
-import java.util.concurrent.Future;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.client.ClientImpl;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
 
 public class KafkaCreditDemo {
 
-    private static final String QUOTE_COMMA_QUOTE = "\",\"";
-    private static final String SINGLE_QUOTE = "\"";
+    public static final String KAFKA_PRODUCER_THREADS = "KAFKA_PRODUCER_THREADS";
+    public static final String KAFKA_BATCH_SIZE = "KAFKA_BATCH_SIZE";
+    public static final String KAFKA_LINGER_MS = "KAFKA_LINGER_MS";
+
+    public static final String KAFKA_COMPRESSION = "KAFKA_COMPRESSION";
+    public static final String KAFKA_COMPRESSION_NONE = "none";
+    public static final String KAFKA_COMPRESSION_GZIP = "gzip";
+    public static final String KAFKA_COMPRESSION_SNAPPY = "snappy";
+    public static final String KAFKA_COMPRESSION_LZ4 = "lz4";
+    public static final String KAFKA_COMPRESSION_ZSTD = "zstd";
+
+    public static final String KAFKA_ACKS = "KAFKA_ACKS";
+    public static final String KAFKA_ACKS_ALL = "all";
+    public static final String KAFKA_ACKS_LEADER = "1";
+    public static final String KAFKA_ACKS_NONE = "0";
+
+    /**
+     * CREDIT sends credits for AddCredit, USAGE sends usage reports for
+     * ReportQuotaUsage
+     */
+    public static final String KAFKA_GENERATOR = "KAFKA_GENERATOR";
+    public static final String KAFKA_GENERATOR_CREDIT = "CREDIT";
+    public static final String KAFKA_GENERATOR_USAGE = "USAGE";
+
+    public static final String KAFKA_RECORD_FORMAT = "KAFKA_RECORD_FORMAT";
+    public static final String KAFKA_RECORD_FORMAT_CSV = "CSV";
+    public static final String KAFKA_RECORD_FORMAT_BINARY = "BINARY";
+
+    /**
+     * MOCK means we send to an in-process MockProducer for each thread instead
+     * of Kafka, so we can see how fast we can generate records. DIRECT means we
+     * skip Kafka and call AddCredit or ReportQuotaUsage ourselves, so we have
+     * something to compare Kafka with.
+     */
+    public static final String KAFKA_SINK = "KAFKA_SINK";
+    public static final String KAFKA_SINK_KAFKA = "KAFKA";
+    public static final String KAFKA_SINK_MOCK = "MOCK";
+    public static final String KAFKA_SINK_DIRECT = "DIRECT";
+
+    public static final String KAFKA_THOUSAND_SENDS_PER_SECOND = "KAFKA_THOUSAND_SENDS_PER_SECOND";
+
+    /**
+     * Kafka's own defaults
+     */
+    private static final int DEFAULT_BATCH_SIZE_BYTES = 16384;
+    private static final int DEFAULT_LINGER_MS = 0;
+
+    /**
+     * Biggest per second send rate our histogram tracks, in thousands
+     */
+    private static final int MAX_THOUSAND_SENDS_PER_SECOND = 10000;
 
     public static void main(String[] args) throws UnknownHostException {
 
         msg("Parameters:" + Arrays.toString(args));
 
-        if (args.length != 5) {
-            msg("Usage: kafkaserverplusport recordcount  tpms durationseconds maxamount");
+        if (args.length != 5 && args.length != 7) {
+            msg("Usage: kafkaserverplusport recordcount  tpms durationseconds maxamount [batchsize voltdbhostnames]");
             System.exit(1);
         }
 
@@ -42,7 +93,7 @@ public class KafkaCreditDemo {
         int tpms = 0;
         int durationseconds = 0;
         int maxamount = 0;
-        Random r = new Random();
+        int batchSize = 1;
 
         try {
             recordCount = Integer.parseInt(args[1]);
@@ -50,72 +101,215 @@ public class KafkaCreditDemo {
             durationseconds = Integer.parseInt(args[3]);
             maxamount = Integer.parseInt(args[4]);
 
+            if (args.length == 7) {
+                batchSize = Integer.parseInt(args[5]);
+            }
+
         } catch (NumberFormatException e) {
             msg("Value should be a number:" + e.getMessage());
             System.exit(1);
         }
 
+        // Each thread needs to send at least one credit per ms...
+        final int threadCount = Math.max(1,
+                Math.min(tpms, BaseChargingDemo.getNumberIfSet(KAFKA_PRODUCER_THREADS, 1)));
+
+        // CREDIT or USAGE. We can only batch credits...
+        final boolean usageReports = KAFKA_GENERATOR_USAGE.equals(BaseChargingDemo.getOptionIfSet(KAFKA_GENERATOR,
+                KAFKA_GENERATOR_CREDIT, KAFKA_GENERATOR_USAGE));
+        final String itemName = usageReports ? "usage reports" : "credits";
+
+        // KAFKA, MOCK or DIRECT...
+        final String sink = BaseChargingDemo.getOptionIfSet(KAFKA_SINK, KAFKA_SINK_KAFKA, KAFKA_SINK_MOCK,
+                KAFKA_SINK_DIRECT);
+        final boolean mockSink = KAFKA_SINK_MOCK.equals(sink);
+        final boolean directSink = KAFKA_SINK_DIRECT.equals(sink);
+
+        if (directSink && args.length != 7) {
+            msg("KAFKA_SINK=" + KAFKA_SINK_DIRECT + " needs batchsize and voltdbhostnames");
+            System.exit(1);
+        }
+
+        if ((usageReports || directSink) && batchSize > 1) {
+            msg("Usage reports and direct calls are sent one at a time");
+            batchSize = 1;
+        }
+
+        // CSV or BINARY. We can only batch CSV...
+        String recordFormat = BaseChargingDemo.getOptionIfSet(KAFKA_RECORD_FORMAT, KAFKA_RECORD_FORMAT_CSV,
+                KAFKA_RECORD_FORMAT_BINARY);
+
+        if ((usageReports || directSink || batchSize > 1) && KAFKA_RECORD_FORMAT_BINARY.equals(recordFormat)) {
+            msg("Batches, usage reports and direct calls are always sent as CSV");
+            recordFormat = KAFKA_RECORD_FORMAT_CSV;
+        }
+
+        final boolean binaryFormat = KAFKA_RECORD_FORMAT_BINARY.equals(recordFormat);
+
+        // When batching we need to know which VoltDB partition each user is in, so
+        // each record only has credits for one partition...
+        ClientImpl partitioningClient = null;
+
+        // ...and if we're skipping Kafka we need to call VoltDB ourselves.
+        ClientImpl directClient = null;
+
+        try {
+            if (batchSize > 1) {
+                partitioningClient = BaseChargingDemo.getPartitioningClient(args[6]);
+            } else if (directSink) {
+                directClient = BaseChargingDemo.getPartitioningClient(args[6]);
+            }
+        } catch (Exception e) {
+            msg("Unable to connect to VoltDB:" + e.getMessage());
+            System.exit(1);
+        }
+
         Properties config = new Properties();
         config.put("client.id", InetAddress.getLocalHost().getHostName());
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaserverplusport);
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
         config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, false);
-        config.put("acks", "all");
-
-        KafkaProducer<String, String> producer = new KafkaProducer<>(config);
+        config.put(ProducerConfig.ACKS_CONFIG, BaseChargingDemo.getOptionIfSet(KAFKA_ACKS, KAFKA_ACKS_ALL,
+                KAFKA_ACKS_LEADER, KAFKA_ACKS_NONE));
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG,
+                BaseChargingDemo.getNumberIfSet(KAFKA_BATCH_SIZE, DEFAULT_BATCH_SIZE_BYTES));
+        config.put(ProducerConfig.LINGER_MS_CONFIG, BaseChargingDemo.getNumberIfSet(KAFKA_LINGER_MS, DEFAULT_LINGER_MS));
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG,
+                BaseChargingDemo.getOptionIfSet(KAFKA_COMPRESSION, KAFKA_COMPRESSION_NONE, KAFKA_COMPRESSION_GZIP,
+                        KAFKA_COMPRESSION_SNAPPY, KAFKA_COMPRESSION_LZ4, KAFKA_COMPRESSION_ZSTD));
+
+        msg("Producer config: " + config);
+
+        Producer<String, byte[]> producer = null;
+
+        if (mockSink) {
+            msg("Not connecting to Kafka, records will be thrown away");
+        } else if (directSink) {
+            msg("Not connecting to Kafka, calling VoltDB directly");
+        } else {
+            producer = new KafkaProducer<>(config);
+        }
 
-        long endtimeMs = System.currentTimeMillis() + (1000 * durationseconds);
-        // How many transactions we've done...
+        SafeHistogramCache shc = SafeHistogramCache.getInstance();
 
-        int tranCount = 0;
+        final long startMs = System.currentTimeMillis();
+        final long endtimeMs = startMs + (1000 * durationseconds);
 
-        int tpThisMs = 0;
-        long currentMs = System.currentTimeMillis();
+        // Split tpms between our threads...
+        Thread[] producerThreads = new Thread[threadCount];
+        PacedProducer[] pacedProducers = new PacedProducer[threadCount];
 
-        while (endtimeMs > System.currentTimeMillis()) {
+        for (int i = 0; i < threadCount; i++) {
 
-            if (tpThisMs++ > tpms) {
+            final int threadTpms = (tpms / threadCount) + (i < (tpms % threadCount) ? 1 : 0);
 
-                while (currentMs == System.currentTimeMillis()) {
-                    try {
-                        Thread.sleep(0, 50000);
-                    } catch (InterruptedException e) {
-                    }
+            // MockProducer is synchronized, so give each thread its own...
+            Producer<String, byte[]> threadProducer = producer;
 
-                }
+            if (mockSink) {
+                threadProducer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+            }
 
-                currentMs = System.currentTimeMillis();
-                tpThisMs = 0;
+            if (usageReports) {
+                pacedProducers[i] = new UsageReportProducer(threadProducer, directClient, shc, i, threadCount,
+                        recordCount, threadTpms, endtimeMs);
+            } else {
+                pacedProducers[i] = new CreditProducer(threadProducer, directClient, shc, partitioningClient, i,
+                        recordCount, threadTpms, endtimeMs, maxamount, batchSize, binaryFormat);
             }
 
-            int userId = r.nextInt(recordCount);
-            int amount = r.nextInt(maxamount);
-            String txnId = "Kafka_" + tranCount + "_" + currentMs;
-            String request = SINGLE_QUOTE + userId + QUOTE_COMMA_QUOTE + amount + QUOTE_COMMA_QUOTE + txnId
-                    + SINGLE_QUOTE;
+            producerThreads[i] = new Thread(pacedProducers[i], "PacedProducer_" + i);
+            producerThreads[i].start();
+        }
+
+        msg("Started " + threadCount + " producer threads");
+
+        // Report send and ack rates once a second until our threads finish. When
+        // we're calling VoltDB directly 'acked' means VoltDB has done the work,
+        // so 'outstanding' is VoltDB's backlog rather than Kafka's...
+        final String ackedName = directSink ? "completed" : "acked";
+        long lastSent = 0;
+        long lastAcked = 0;
 
-            ProducerRecord<String, String> newrec = new ProducerRecord<>("ADDCREDIT", txnId, request);
+        for (Thread producerThread : producerThreads) {
 
-            Future<RecordMetadata> theFuture = producer.send(newrec);
+            while (producerThread.isAlive()) {
 
-            if (tranCount++ % 10000 == 0) {
-                while (!theFuture.isDone()) {
-                    try {
-                        Thread.sleep(0, 50000);
-                    } catch (InterruptedException e) {
-                        // TODO Auto-generated catch block
-                        e.printStackTrace();
-                    }
+                try {
+                    producerThread.join(1000);
+                } catch (InterruptedException e) {
+                    msg(e.getMessage());
                 }
 
-                msg("On transaction# " + tranCount + ", user,amount,txnid= " + request);
+                final long sent = shc.getCounter(PacedProducer.KAFKA_SENT_CREDITS);
+                final long acked = shc.getCounter(PacedProducer.KAFKA_ACKED_CREDITS);
+
+                shc.reportSize(KAFKA_THOUSAND_SENDS_PER_SECOND, (int) ((sent - lastSent) / 1000),
+                        KAFKA_THOUSAND_SENDS_PER_SECOND, MAX_THOUSAND_SENDS_PER_SECOND);
+                final long failed = shc.getCounter(PacedProducer.KAFKA_FAILED_CREDITS);
+
+                msg(sink + ": Sent " + (sent - lastSent) + "/sec, " + ackedName + " " + (acked - lastAcked)
+                        + "/sec, outstanding " + (sent - acked - failed) + ", failed " + failed + " so far");
+
+                lastSent = sent;
+                lastAcked = acked;
             }
+        }
 
+        if (producer != null) {
+            producer.flush();
+            producer.close();
         }
 
-        producer.flush();
-        producer.close();
+        if (directClient != null) {
+            try {
+                directClient.drain();
+                directClient.close();
+            } catch (Exception e) {
+                msg(e.getMessage());
+            }
+        }
+
+        final long elapsedMs = Math.max(1, System.currentTimeMillis() - startMs);
+        final long sentCredits = shc.getCounter(PacedProducer.KAFKA_SENT_CREDITS);
+
+        msg(sink + ": " + sentCredits + " " + itemName + " sent in "
+                + shc.getCounter(PacedProducer.KAFKA_SENT_RECORDS) + " records in " + elapsedMs + "ms, "
+                + ((sentCredits * 1000) / elapsedMs) + " " + itemName + "/sec");
+        msg(sink + ": " + shc.getCounter(PacedProducer.KAFKA_ACKED_CREDITS) + " " + itemName + " " + ackedName
+                + ", " + shc.getCounter(PacedProducer.KAFKA_FAILED_CREDITS) + " failed");
+        msg(shc.get(PacedProducer.KAFKA_SEND_ACK).toString());
+
+        // So we can compare CSV and BINARY...
+        final long sentRecords = Math.max(1, shc.getCounter(PacedProducer.KAFKA_SENT_RECORDS));
+        long cpuNanos = 0;
+
+        for (PacedProducer pacedProducer : pacedProducers) {
+            cpuNanos += pacedProducer.cpuNanos;
+        }
+
+        // Direct calls don't build records...
+        final String formatName = directSink ? sink : "Format " + recordFormat;
+
+        msg(formatName + ": " + (shc.getCounter(PacedProducer.KAFKA_SENT_BYTES) / sentRecords)
+                + " bytes per record, " + (cpuNanos / Math.max(1, sentCredits))
+                + " producer thread CPU ns per " + (usageReports ? "usage report" : "credit"));
+
+        if (usageReports) {
+            msg(shc.getCounter(UsageReportProducer.KAFKA_STARTED_SESSIONS) + " sessions started, "
+                    + shc.getCounter(UsageReportProducer.KAFKA_FINISHED_SESSIONS) + " finished");
+        }
+        msg(shc.getSize(KAFKA_THOUSAND_SENDS_PER_SECOND).toString());
+
+        if (partitioningClient != null) {
+
+            try {
+                partitioningClient.close();
+            } catch (InterruptedException e) {
+                msg(e.getMessage());
+            }
+        }
 
     }
 
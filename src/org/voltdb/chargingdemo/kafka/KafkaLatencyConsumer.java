@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+import chargingdemoformatter.BinaryCreditRecord;
+
+/**
+ * Measures how long a credit takes to get from KafkaCreditDemo, through the
+ * ADDCREDIT topic and AddCredit, to the USER_FINANCIAL_EVENTS export topic.
+ * KafkaCreditDemo puts the time it sent each credit in the txnId, so we read
+ * the export topic and compare that with the time the event was written to
+ * Kafka and the time we saw it. Once a second we print how many events we saw
+ * and how far behind we were. Usage reports sent by KafkaCreditDemo only show
+ * up when they spend something.
+ *
+ */
+public class KafkaLatencyConsumer {
+
+    public static final String USER_FINANCIAL_EVENTS_TOPIC = "USER_FINANCIAL_EVENTS";
+
+    /**
+     * From send to the export record being written to Kafka
+     */
+    public static final String KAFKA_SEND_TO_EXPORT = "KAFKA_SEND_TO_EXPORT";
+
+    /**
+     * From send to us reading the export record
+     */
+    public static final String KAFKA_END_TO_END = "KAFKA_END_TO_END";
+
+    /**
+     * KAFKA_END_TO_END for usage reports and credits on their own
+     */
+    public static final String KAFKA_END_TO_END_USAGE = "KAFKA_END_TO_END_USAGE";
+    public static final String KAFKA_END_TO_END_CREDIT = "KAFKA_END_TO_END_CREDIT";
+
+    public static final String KAFKA_MATCHED_EVENTS = "KAFKA_MATCHED_EVENTS";
+    public static final String KAFKA_OTHER_EVENTS = "KAFKA_OTHER_EVENTS";
+
+    private static final long POLL_MS = 100;
+
+    public static void main(String[] args) throws UnknownHostException {
+
+        KafkaCreditDemo.msg("Parameters:" + Arrays.toString(args));
+
+        if (args.length != 2) {
+            KafkaCreditDemo.msg("Usage: kafkaserverplusport durationseconds");
+            System.exit(1);
+        }
+
+        String kafkaserverplusport = args[0];
+        int durationseconds = 0;
+
+        try {
+            durationseconds = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            KafkaCreditDemo.msg("Value should be a number:" + e.getMessage());
+            System.exit(1);
+        }
+
+        // We only care about new events, so we use our own group and start at the
+        // end...
+        Properties config = new Properties();
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, InetAddress.getLocalHost().getHostName());
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, "KafkaLatencyConsumer_" + System.currentTimeMillis());
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaserverplusport);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        SafeHistogramCache shc = SafeHistogramCache.getInstance();
+
+        final long startMs = System.currentTimeMillis();
+        final long endtimeMs = startMs + (1000 * durationseconds);
+
+        long nextReportMs = startMs + 1000;
+        long matchedThisSecond = 0;
+        long totalLagThisSecond = 0;
+        long maxLagThisSecond = 0;
+
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(config)) {
+
+            consumer.subscribe(Collections.singletonList(USER_FINANCIAL_EVENTS_TOPIC));
+
+            while (endtimeMs > System.currentTimeMillis()) {
+
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(POLL_MS));
+
+                final long nowMs = System.currentTimeMillis();
+
+                for (ConsumerRecord<String, String> record : records) {
+
+                    final long sentMs = getSentMs(record.value());
+
+                    if (sentMs < 0) {
+                        shc.incCounter(KAFKA_OTHER_EVENTS);
+                        continue;
+                    }
+
+                    // Kafka timestamps the export record when VoltDB writes it...
+                    final long lagMs = Math.max(0, record.timestamp() - sentMs);
+
+                    shc.report(KAFKA_SEND_TO_EXPORT, (int) lagMs, KAFKA_SEND_TO_EXPORT,
+                            BaseChargingDemo.HISTOGRAM_SIZE_MS);
+                    shc.reportLatency(KAFKA_END_TO_END, sentMs, KAFKA_END_TO_END, BaseChargingDemo.HISTOGRAM_SIZE_MS);
+
+                    if (record.value().indexOf(UsageReportProducer.USAGE_TXN_ID_PREFIX) >= 0) {
+                        shc.reportLatency(KAFKA_END_TO_END_USAGE, sentMs, KAFKA_END_TO_END_USAGE,
+                                BaseChargingDemo.HISTOGRAM_SIZE_MS);
+                    } else {
+                        shc.reportLatency(KAFKA_END_TO_END_CREDIT, sentMs, KAFKA_END_TO_END_CREDIT,
+                                BaseChargingDemo.HISTOGRAM_SIZE_MS);
+                    }
+                    shc.incCounter(KAFKA_MATCHED_EVENTS);
+
+                    matchedThisSecond++;
+                    totalLagThisSecond += lagMs;
+                    maxLagThisSecond = Math.max(maxLagThisSecond, nowMs - sentMs);
+                }
+
+                if (nowMs >= nextReportMs) {
+
+                    final long averageLagMs = matchedThisSecond == 0 ? 0 : totalLagThisSecond / matchedThisSecond;
+
+                    // Little's law - if we're seeing this many per second and
+                    // they're this far behind, this many must be queued up...
+                    KafkaCreditDemo.msg("Matched " + matchedThisSecond + " events/sec, average send to export "
+                            + averageLagMs + "ms, worst end to end " + maxLagThisSecond + "ms, estimated backlog "
+                            + ((matchedThisSecond * averageLagMs) / 1000) + " events");
+
+                    nextReportMs += 1000;
+                    matchedThisSecond = 0;
+                    totalLagThisSecond = 0;
+                    maxLagThisSecond = 0;
+                }
+            }
+        }
+
+        KafkaCreditDemo.msg(shc.getCounter(KAFKA_MATCHED_EVENTS) + " events matched, "
+                + shc.getCounter(KAFKA_OTHER_EVENTS) + " events not sent by KafkaCreditDemo");
+        KafkaCreditDemo.msg(shc.get(KAFKA_SEND_TO_EXPORT).toString());
+        KafkaCreditDemo.msg(shc.get(KAFKA_END_TO_END).toString());
+
+        if (shc.get(KAFKA_END_TO_END_USAGE).hasReports()) {
+            KafkaCreditDemo.msg(shc.get(KAFKA_END_TO_END_USAGE).toString());
+        }
+
+        if (shc.get(KAFKA_END_TO_END_CREDIT).hasReports()) {
+            KafkaCreditDemo.msg(shc.get(KAFKA_END_TO_END_CREDIT).toString());
+        }
+
+    }
+
+    /**
+     * Find the KafkaCreditDemo txnId in an exported user_financial_events row and
+     * get the time it was sent from it.
+     *
+     * @param value CSV row - userid, amount, user_txn_id, message
+     * @return time the credit was sent, or -1 if it isn't one of ours
+     */
+    static long getSentMs(String value) {
+
+        if (value == null) {
+            return -1;
+        }
+
+        final int txnIdStart = value.indexOf(BinaryCreditRecord.TXN_ID_PREFIX);
+
+        if (txnIdStart < 0) {
+            return -1;
+        }
+
+        int txnIdEnd = txnIdStart;
+
+        while (txnIdEnd < value.length() && value.charAt(txnIdEnd) != '"' && value.charAt(txnIdEnd) != ',') {
+            txnIdEnd++;
+        }
+
+        final int sentMsStart = value.lastIndexOf('_', txnIdEnd - 1) + 1;
+
+        if (sentMsStart <= txnIdStart + BinaryCreditRecord.TXN_ID_PREFIX.length()) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.substring(sentMsStart, txnIdEnd));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
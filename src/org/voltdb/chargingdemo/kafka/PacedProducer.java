@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.voltdb.client.Client;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Sends records to Kafka at 'tpms' records per millisecond until 'endtimeMs'.
+ * Subclasses decide what each record is. KafkaCreditDemo runs several of these
+ * at once, sharing one KafkaProducer. If we're given a VoltDB client instead we
+ * call the procedure Kafka would have fed directly, so we can see what Kafka
+ * costs us.
+ *
+ */
+public abstract class PacedProducer implements Runnable {
+
+    public static final String KAFKA_SEND_ACK = "KAFKA_SEND_ACK";
+    public static final String KAFKA_SENT_CREDITS = "KAFKA_SENT_CREDITS";
+    public static final String KAFKA_ACKED_CREDITS = "KAFKA_ACKED_CREDITS";
+    public static final String KAFKA_FAILED_CREDITS = "KAFKA_FAILED_CREDITS";
+    public static final String KAFKA_SENT_RECORDS = "KAFKA_SENT_RECORDS";
+    public static final String KAFKA_SENT_BYTES = "KAFKA_SENT_BYTES";
+
+    /**
+     * How many records we let a MockProducer keep
+     */
+    private static final int MOCK_HISTORY_SIZE = 10000;
+
+    Producer<String, byte[]> producer;
+
+    /**
+     * Same as producer if we're not really sending to Kafka
+     */
+    MockProducer<String, byte[]> mockProducer = null;
+
+    /**
+     * Set if we call VoltDB directly instead of using Kafka
+     */
+    Client directClient;
+    SafeHistogramCache shc;
+    int threadId;
+    int tpms;
+    long endtimeMs;
+
+    Random r = new Random();
+
+    /**
+     * CPU time this thread used, once it has finished
+     */
+    long cpuNanos = 0;
+
+    /**
+     * @param producer     shared KafkaProducer, or a MockProducer of our own, or
+     *                     null if we're calling VoltDB directly
+     * @param directClient VoltDB client to call directly, or null
+     * @param shc
+     * @param threadId     used to keep txnIds unique
+     * @param tpms         records per millisecond for this thread
+     * @param endtimeMs    when to stop
+     */
+    @SuppressWarnings("unchecked")
+    public PacedProducer(Producer<String, byte[]> producer, Client directClient, SafeHistogramCache shc,
+            int threadId, int tpms, long endtimeMs) {
+        this.producer = producer;
+        this.directClient = directClient;
+        this.shc = shc;
+        this.threadId = threadId;
+        this.tpms = tpms;
+        this.endtimeMs = endtimeMs;
+
+        if (producer instanceof MockProducer) {
+            mockProducer = (MockProducer<String, byte[]>) producer;
+        }
+    }
+
+    @Override
+    public void run() {
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        final long startCpuNanos = threadBean.getCurrentThreadCpuTime();
+
+        long tranCount = 0;
+        int tpThisMs = 0;
+        long currentMs = System.currentTimeMillis();
+
+        while (endtimeMs > System.currentTimeMillis()) {
+
+            if (tpThisMs++ >= tpms) {
+
+                while (currentMs == System.currentTimeMillis()) {
+                    try {
+                        Thread.sleep(0, 50000);
+                    } catch (InterruptedException e) {
+                    }
+
+                }
+
+                currentMs = System.currentTimeMillis();
+                tpThisMs = 0;
+            }
+
+            sendNext(tranCount, System.currentTimeMillis());
+
+            // MockProducer remembers everything we send...
+            if (mockProducer != null && tranCount % MOCK_HISTORY_SIZE == 0) {
+                mockProducer.clear();
+            }
+
+            if (tranCount++ % 100000 == 0) {
+                KafkaCreditDemo.msg("Thread " + threadId + " on transaction# " + tranCount);
+            }
+        }
+
+        finish();
+
+        cpuNanos = threadBean.getCurrentThreadCpuTime() - startCpuNanos;
+    }
+
+    /**
+     * Send (or start building) our next record.
+     *
+     * @param count  how many times we've been called before
+     * @param sentMs now
+     */
+    protected abstract void sendNext(long count, long sentMs);
+
+    /**
+     * Called when we've run out of time, in case we have something left to send.
+     */
+    protected void finish() {
+    }
+
+    /**
+     * Call a procedure directly instead of sending a record to Kafka.
+     *
+     * @param procName
+     * @param params
+     */
+    protected void callDirect(String procName, Object... params) {
+
+        shc.incCounter(KAFKA_SENT_CREDITS);
+        shc.incCounter(KAFKA_SENT_RECORDS);
+
+        try {
+            directClient.callProcedure(new DirectCallCallback(shc), procName, params);
+        } catch (Exception e) {
+            shc.incCounter(KAFKA_FAILED_CREDITS);
+
+            if (shc.getCounter(KAFKA_FAILED_CREDITS) <= 1) {
+                KafkaCreditDemo.msg("callDirect: " + e.getMessage());
+            }
+        }
+    }
+
+}
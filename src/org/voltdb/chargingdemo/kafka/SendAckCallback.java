@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.voltdb.chargingdemo.BaseChargingDemo;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+/**
+ * Called when Kafka acknowledges a record. Records how long it took between
+ * send and ack, and how many credits have been acked.
+ *
+ */
+public class SendAckCallback implements Callback {
+
+    SafeHistogramCache shc;
+    int creditCount;
+    final long startMs = System.currentTimeMillis();
+
+    /**
+     * @param shc
+     * @param creditCount how many credits are in this record
+     */
+    public SendAckCallback(SafeHistogramCache shc, int creditCount) {
+        this.shc = shc;
+        this.creditCount = creditCount;
+    }
+
+    @Override
+    public void onCompletion(RecordMetadata metadata, Exception exception) {
+
+        if (exception == null) {
+            shc.reportLatency(PacedProducer.KAFKA_SEND_ACK, startMs, PacedProducer.KAFKA_SEND_ACK,
+                    BaseChargingDemo.HISTOGRAM_SIZE_MS);
+            shc.incCounter(PacedProducer.KAFKA_ACKED_CREDITS, creditCount);
+        } else {
+            shc.incCounter(PacedProducer.KAFKA_FAILED_CREDITS, creditCount);
+
+            if (shc.getCounter(PacedProducer.KAFKA_FAILED_CREDITS) <= creditCount) {
+                KafkaCreditDemo.msg("SendAckCallback: " + exception.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.voltdb.client.Client;
+import org.voltdb.voltutil.stats.SafeHistogramCache;
+
+import chargingdemoformatter.BinaryCreditRecord;
+
+/**
+ * Sends usage reports to the REPORTUSAGE topic, which VoltDB feeds to
+ * ReportQuotaUsage. We behave like a network element with a fixed number of
+ * sessions on the go: a session starts by asking for credit, reports usage a
+ * few times and then finishes by asking for nothing. As nobody tells us what
+ * was granted, each report says we used some of what we last asked for.
+ *
+ * Session ids are made up here, the way a network element would, so they
+ * don't depend on ReportQuotaUsage's responses.
+ *
+ */
+public class UsageReportProducer extends PacedProducer {
+
+    public static final String REPORTUSAGE_TOPIC = "REPORTUSAGE";
+
+    /**
+     * txnIds look like 'Kafka_Usage<thread>_count_sentms', so
+     * KafkaLatencyConsumer can tell them apart from credits
+     */
+    public static final String USAGE_TXN_ID_PREFIX = BinaryCreditRecord.TXN_ID_PREFIX + "Usage";
+
+    public static final String KAFKA_STARTED_SESSIONS = "KAFKA_STARTED_SESSIONS";
+    public static final String KAFKA_FINISHED_SESSIONS = "KAFKA_FINISHED_SESSIONS";
+
+    /**
+     * Sessions each thread has open at once
+     */
+    public static final int SESSIONS_PER_THREAD = 1000;
+
+    /**
+     * Most usage reports in a session, not counting the first and last
+     */
+    public static final int MAX_REPORTS_PER_SESSION = 10;
+
+    /**
+     * Most units a session asks for at once
+     */
+    public static final int MAX_UNITS_WANTED = 100;
+
+    private static final char QUOTE = '"';
+    private static final String QUOTE_COMMA_QUOTE = "\",\"";
+
+    int recordCount;
+    int threadCount;
+
+    /**
+     * Open sessions. A sessionId of 0 means the slot is free.
+     */
+    int[] sessionUserIds = new int[SESSIONS_PER_THREAD];
+    long[] sessionIds = new long[SESSIONS_PER_THREAD];
+    int[] sessionUnitsWanted = new int[SESSIONS_PER_THREAD];
+    int[] sessionReportsLeft = new int[SESSIONS_PER_THREAD];
+
+    /**
+     * Session ids start with the time we started, so they don't clash with
+     * earlier runs...
+     */
+    final long sessionIdBase = System.currentTimeMillis() * 1000;
+    long sessionCount = 0;
+
+    StringBuilder request = new StringBuilder();
+
+    /**
+     * @param producer     shared KafkaProducer, or a MockProducer of our own, or
+     *                     null if we're calling VoltDB directly
+     * @param directClient VoltDB client to call ReportQuotaUsage with, or null
+     * @param shc
+     * @param threadId     used to keep txnIds and session ids unique
+     * @param threadCount  how many of us there are
+     * @param recordCount  how many users there are
+     * @param tpms         usage reports per millisecond for this thread
+     * @param endtimeMs    when to stop
+     */
+    public UsageReportProducer(Producer<String, byte[]> producer, Client directClient, SafeHistogramCache shc,
+            int threadId, int threadCount, int recordCount, int tpms, long endtimeMs) {
+        super(producer, directClient, shc, threadId, tpms, endtimeMs);
+        this.threadCount = threadCount;
+        this.recordCount = recordCount;
+    }
+
+    @Override
+    protected void sendNext(long count, long sentMs) {
+
+        final int slot = r.nextInt(SESSIONS_PER_THREAD);
+
+        int unitsUsed = 0;
+        int unitsWanted = 1 + r.nextInt(MAX_UNITS_WANTED);
+
+        if (sessionIds[slot] == 0) {
+
+            // Start a new session...
+            sessionUserIds[slot] = r.nextInt(recordCount);
+            sessionIds[slot] = sessionIdBase + (sessionCount++ * threadCount) + threadId;
+            sessionReportsLeft[slot] = 1 + r.nextInt(MAX_REPORTS_PER_SESSION);
+            shc.incCounter(KAFKA_STARTED_SESSIONS);
+
+        } else {
+
+            unitsUsed = r.nextInt(sessionUnitsWanted[slot] + 1);
+
+            if (--sessionReportsLeft[slot] < 0) {
+                // Last report for this session...
+                unitsWanted = 0;
+                shc.incCounter(KAFKA_FINISHED_SESSIONS);
+            }
+        }
+
+        send(sessionUserIds[slot], unitsUsed, unitsWanted, sessionIds[slot], count, sentMs);
+
+        if (unitsWanted == 0) {
+            sessionIds[slot] = 0;
+        } else {
+            sessionUnitsWanted[slot] = unitsWanted;
+        }
+    }
+
+    /**
+     * Send a usage report as CSV - userId, unitsUsed, unitsWanted, sessionId,
+     * txnId, which is what ReportQuotaUsage takes. We use the userId as the key
+     * so a user's reports stay in order. If we're calling VoltDB directly we
+     * pass the same values to ReportQuotaUsage instead.
+     *
+     * @param userId
+     * @param unitsUsed
+     * @param unitsWanted
+     * @param sessionId
+     * @param count
+     * @param sentMs
+     */
+    private void send(int userId, int unitsUsed, int unitsWanted, long sessionId, long count, long sentMs) {
+
+        if (directClient != null) {
+            callDirect("ReportQuotaUsage", userId, unitsUsed, unitsWanted, sessionId,
+                    USAGE_TXN_ID_PREFIX + threadId + '_' + count + '_' + sentMs);
+            return;
+        }
+
+        request.setLength(0);
+        request.append(QUOTE);
+        request.append(userId);
+        request.append(QUOTE_COMMA_QUOTE);
+        request.append(unitsUsed);
+        request.append(QUOTE_COMMA_QUOTE);
+        request.append(unitsWanted);
+        request.append(QUOTE_COMMA_QUOTE);
+        request.append(sessionId);
+        request.append(QUOTE_COMMA_QUOTE);
+        request.append(USAGE_TXN_ID_PREFIX);
+        request.append(threadId);
+        request.append('_');
+        request.append(count);
+        request.append('_');
+        request.append(sentMs);
+        request.append(QUOTE);
+
+        final byte[] value = request.toString().getBytes(StandardCharsets.UTF_8);
+
+        ProducerRecord<String, byte[]> newrec = new ProducerRecord<>(REPORTUSAGE_TOPIC, String.valueOf(userId),
+                value);
+
+        producer.send(newrec, new SendAckCallback(shc, 1));
+        shc.incCounter(KAFKA_SENT_CREDITS);
+        shc.incCounter(KAFKA_SENT_RECORDS);
+        shc.incCounter(KAFKA_SENT_BYTES, value.length);
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2025 Volt Active Data Inc.
+ *
+ * Use of this source code is governed by an MIT
+ * license that can be found in the LICENSE file or at
+ * https://opensource.org/licenses/MIT.
+ */
+
+package org.voltdb.chargingdemo.kafka;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every user's balance, kept up to date from USER_FINANCIAL_EVENTS. Balances
+ * are held in a long[] indexed by userid, as our userids are small and dense.
+ * Along with balances we keep the next offset we need for each Kafka
+ * partition, so a snapshot on disk can be picked up from where it left off.
+ *
+ * One thread applies events, while any number of threads look up balances.
+ *
+ */
+public class UserBalanceReadModel {
+
+    /**
+     * Returned by getBalance for users we've never seen. Same as VoltDB NULL.
+     */
+    public static final long UNKNOWN_BALANCE = Long.MIN_VALUE;
+
+    private static final int SNAPSHOT_MAGIC = 0x55424d31;
+
+    private static final int INITIAL_SIZE = 1024 * 1024;
+
+    long[] balances = new long[INITIAL_SIZE];
+    BitSet knownUsers = new BitSet(INITIAL_SIZE);
+
+    /**
+     * Next offset for each Kafka partition
+     */
+    HashMap<Integer, Long> nextOffsets = new HashMap<>();
+
+    /**
+     * Add 'amount' to a user's balance.
+     *
+     * @param userId
+     * @param amount
+     */
+    public synchronized void apply(int userId, long amount) {
+
+        if (userId >= balances.length) {
+            balances = Arrays.copyOf(balances, Math.max(userId + 1, balances.length * 2));
+        }
+
+        balances[userId] += amount;
+        knownUsers.set(userId);
+    }
+
+    /**
+     * Note that we've applied everything in a Kafka partition before 'offset'.
+     *
+     * @param partition
+     * @param offset
+     */
+    public synchronized void setNextOffset(int partition, long offset) {
+        nextOffsets.put(partition, offset);
+    }
+
+    /**
+     * @param partition
+     * @return next offset we need for 'partition', or -1 if we don't know
+     */
+    public synchronized long getNextOffset(int partition) {
+
+        Long offset = nextOffsets.get(partition);
+
+        if (offset == null) {
+            return -1;
+        }
+
+        return offset;
+    }
+
+    /**
+     * @param userId
+     * @return balance, or UNKNOWN_BALANCE
+     */
+    public synchronized long getBalance(int userId) {
+
+        if (userId < 0 || !knownUsers.get(userId)) {
+            return UNKNOWN_BALANCE;
+        }
+
+        return balances[userId];
+    }
+
+    /**
+     * @return how many users we know about
+     */
+    public synchronized int getUserCount() {
+        return knownUsers.cardinality();
+    }
+
+    /**
+     * Write a snapshot. We write the offsets followed by a userid and balance for
+     * each user we know about, to a temporary file which we then rename.
+     *
+     * @param snapshotFile
+     * @return bytes written
+     * @throws IOException
+     */
+    public long save(File snapshotFile) throws IOException {
+
+        // Copy what we need so we don't hold up updates while we write...
+        long[] balancesCopy;
+        BitSet knownUsersCopy;
+        HashMap<Integer, Long> nextOffsetsCopy;
+
+        synchronized (this) {
+            balancesCopy = Arrays.copyOf(balances, knownUsers.length());
+            knownUsersCopy = (BitSet) knownUsers.clone();
+            nextOffsetsCopy = new HashMap<>(nextOffsets);
+        }
+
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+
+        try (DataOutputStream dos = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+
+            dos.writeInt(SNAPSHOT_MAGIC);
+            dos.writeInt(nextOffsetsCopy.size());
+
+            for (Map.Entry<Integer, Long> entry : nextOffsetsCopy.entrySet()) {
+                dos.writeInt(entry.getKey());
+                dos.writeLong(entry.getValue());
+            }
+
+            dos.writeInt(knownUsersCopy.cardinality());
+
+            for (int userId = knownUsersCopy.nextSetBit(0); userId >= 0; userId = knownUsersCopy
+                    .nextSetBit(userId + 1)) {
+                dos.writeInt(userId);
+                dos.writeLong(balancesCopy[userId]);
+            }
+        }
+
+        Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        return snapshotFile.length();
+    }
+
+    /**
+     * Replace what we have with a snapshot written by save.
+     *
+     * @param snapshotFile
+     * @throws IOException
+     */
+    public synchronized void load(File snapshotFile) throws IOException {
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+
+            if (dis.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(snapshotFile + " isn't a balance snapshot");
+            }
+
+            nextOffsets.clear();
+            final int partitionCount = dis.readInt();
+
+            for (int i = 0; i < partitionCount; i++) {
+                nextOffsets.put(dis.readInt(), dis.readLong());
+            }
+
+            balances = new long[INITIAL_SIZE];
+            knownUsers.clear();
+            final int userCount = dis.readInt();
+
+            for (int i = 0; i < userCount; i++) {
+                apply(dis.readInt(), dis.readLong());
+            }
+        }
+    }
+
+}